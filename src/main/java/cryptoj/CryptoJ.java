@@ -1,35 +1,48 @@
 package cryptoj;
 
-import com.google.common.base.Splitter;
+import cryptoj.classes.AddressClassification;
+import cryptoj.classes.DerivedAddress;
+import cryptoj.classes.PrivateKeyContext;
 import cryptoj.classes.TXReceiver;
 import cryptoj.classes.UTXObject;
+import cryptoj.classes.XPubHandle;
 import cryptoj.demos.Demo_2_SignAndVerifyMessage;
 import cryptoj.demos.Demo_3_EncryptAndDecryptMessage;
+import cryptoj.engines.DerivedAddressSpliterator;
+import cryptoj.enums.AddressStatus;
 import cryptoj.enums.AddressType;
 import cryptoj.enums.Coin;
 import cryptoj.enums.CoinType;
 import cryptoj.enums.Network;
 import cryptoj.exceptions.CryptoJException;
-import cryptoj.network.IWrappedNetParams;
 import cryptoj.network.WrappedMainNetParams;
 import cryptoj.network.WrappedTestNetParams;
+import cryptoj.tools.AddressClassifier;
+import cryptoj.tools.AddressValidator;
+import cryptoj.tools.Base58Codec;
+import cryptoj.tools.DrbgEntropySource;
+import cryptoj.tools.EntropySource;
+import cryptoj.tools.Hash160;
+import cryptoj.tools.HexCodec;
+import cryptoj.tools.MnemonicValidator;
+import cryptoj.tools.SeedCache;
 import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
 import org.bitcoinj.core.*;
 import org.bitcoinj.crypto.*;
 import org.bitcoinj.script.Script;
 import org.bitcoinj.script.ScriptBuilder;
 import org.bitcoinj.script.ScriptPattern;
-import org.bitcoinj.wallet.DeterministicKeyChain;
-import org.bitcoinj.wallet.DeterministicSeed;
-import org.bitcoinj.wallet.UnreadableWalletException;
 import org.bouncycastle.crypto.BufferedBlockCipher;
 import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.digests.KeccakDigest;
 import org.bouncycastle.crypto.engines.AESEngine;
 import org.bouncycastle.crypto.modes.CBCBlockCipher;
 import org.bouncycastle.crypto.paddings.PaddedBufferedBlockCipher;
 import org.bouncycastle.crypto.params.KeyParameter;
 import org.bouncycastle.crypto.params.ParametersWithIV;
 import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
 import org.web3j.abi.FunctionEncoder;
 import org.web3j.abi.TypeReference;
 import org.web3j.abi.datatypes.Bool;
@@ -49,6 +62,10 @@ import java.math.RoundingMode;
 import java.nio.charset.Charset;
 import java.security.*;
 import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static lombok.AccessLevel.PRIVATE;
 
 /**
  * Universal and easy-to-integrate java library for java/blockchain developers. By calling just
@@ -80,6 +97,23 @@ import java.util.*;
  */
 public class CryptoJ {
 
+    private static final Map<Network, NetworkParameters> NETWORK_PARAMS = new EnumMap<>(Network.class);
+    private static final FixedPointCombMultiplier MULTIPLIER = new FixedPointCombMultiplier();
+    private static final ThreadLocal<KeyMatchBuffers> KEY_MATCH_BUFFERS = ThreadLocal.withInitial(KeyMatchBuffers::new);
+
+    static {
+        for (Network network : Network.values()) {
+            if (network.isMainNet()) {
+                NETWORK_PARAMS.put(network, new WrappedMainNetParams(network));
+            } else {
+                NETWORK_PARAMS.put(network, new WrappedTestNetParams(network));
+            }
+        }
+    }
+
+    private static volatile SeedCache seedCache;
+    private static volatile EntropySource entropySource = new DrbgEntropySource();
+
 
     // SECTION - MNEMONIC //
 
@@ -97,10 +131,13 @@ public class CryptoJ {
     }
 
     /**
-     * Generate mnemonic.
+     * Generate mnemonic.<br>
+     * <br>
+     * The mnemonic depends only on the entropy, the passphrase is not used here - it applies when the seed is
+     * derived from the mnemonic (e.g. {@link #generateXPub(Network, AddressType, String, String)}).
      *
      * @param length     min value 12, max value 24, multiply of 3
-     * @param passphrase passphrase used to encrypt key - empty string means non-encrypted key
+     * @param passphrase ignored
      * @return mnemonic phrase made of words
      * @throws CryptoJException if method params are invalid or internal validation of generated result fails
      */
@@ -112,19 +149,22 @@ public class CryptoJ {
         if (length < 12 || length > 24 || length % 3 > 0)
             throw new CryptoJException("Invalid word length: it must be between 12 and 24, and multiple of 3");
 
-        // fix passphrase
-        if (passphrase == null) {
-            passphrase = "";
-        }
-
         int checkSumLen = length / 3;
         int entropyLen = length * 11 - checkSumLen;
 
-        // Generate deterministic seed
-        DeterministicSeed seed = new DeterministicSeed(new SecureRandom(), entropyLen, passphrase);
+        // Generate entropy - the mnemonic encodes only the entropy, the passphrase is applied when the seed is derived
+        byte[] entropy = new byte[entropyLen / 8];
+        entropySource.nextBytes(entropy);
 
-        // Get mnemonic from seed
-        List<String> words = seed.getMnemonicCode();
+        // Get mnemonic from entropy
+        List<String> words;
+        try {
+            words = MnemonicCode.INSTANCE.toMnemonic(entropy);
+        } catch (MnemonicException.MnemonicLengthException e) {
+            throw new CryptoJException("Invalid word length: it must be between 12 and 24, and multiple of 3");
+        } finally {
+            Arrays.fill(entropy, (byte) 0);
+        }
 
         // Concat word list
         String mnemonic = String.join(" ", words);
@@ -146,16 +186,20 @@ public class CryptoJ {
     public static boolean isMnemonicValid(
             @NonNull String mnemonic
     ) {
-        // Split mnemonic string by space
-        List<String> words = Splitter.on(' ').splitToList(mnemonic);
+        // scan words in place and check the checksum, the same as MnemonicCode.check() of BitcoinJ
+        return MnemonicValidator.validate(mnemonic);
+    }
 
-        // check by MnemonicCode class of BitcoinJ
-        try {
-            MnemonicCode.INSTANCE.check(words);
-            return true;
-        } catch (MnemonicException e) {
-            return false;
-        }
+    /**
+     * Validate many mnemonics at once, e.g. for a bulk import.
+     *
+     * @param mnemonics to be validated
+     * @return validity of the mnemonics, the validity of mnemonic at position i is at position i
+     */
+    public static boolean[] areMnemonicsValid(
+            @NonNull List<String> mnemonics
+    ) {
+        return new MnemonicValidator().areValid(mnemonics);
     }
 
 
@@ -218,58 +262,64 @@ public class CryptoJ {
             throw new CryptoJException("Mnemonic is not valid.");
         }
 
-        // fix passphrase
-        if (passphrase == null) {
-            passphrase = "";
-        }
+        String xPub = new PrivateKeyContext(network, addrType, mnemonic, passphrase).xPub();
 
-        DeterministicSeed seed;
-        try {
-            seed = new DeterministicSeed(mnemonic, null, passphrase, 0);
-        } catch (UnreadableWalletException e) {
-            throw new CryptoJException("Invalid mnemonic");
+        // internal validation
+        if (isXPubValid(network, xPub) == false) {
+            throw new CryptoJException("Internal validation (xPub) has failed.");
         }
 
-        /**
-         * Build HD path
-         * Ref: BIP 44 - https://github.com/bitcoin/bips/blob/master/bip-0044.mediawiki
-         */
-        HDPath path = HDPath.m();
+        return xPub;
+    }
 
-        // extend purpose - current path is m/purpose'
-        path = path.extend(new ChildNumber(addrType.getPurpose(), true)); // /purpose'
+    /**
+     * Generate xPubs (extended public keys) for all combinations of networks and address types.<br>
+     * <br>
+     * The seed and the master key are derived only once, and common hardened prefixes of the paths are shared,
+     * so this is much cheaper than calling {@link #generateXPub(Network, AddressType, String, String)}
+     * for every combination.
+     *
+     * @param mnemonic   phrase made of words
+     * @param passphrase which was used when mnemonic was generated
+     * @param networks   networks
+     * @param addrTypes  address types
+     * @return extened public keys of every requested network and address type
+     * @throws CryptoJException if method params are invalid or internal validation of generated result fails
+     */
+    public static Map<Network, Map<AddressType, String>> generateAllXPubs(
+            @NonNull String mnemonic,
+            String passphrase,
+            @NonNull Set<Network> networks,
+            @NonNull Set<AddressType> addrTypes
+    ) throws CryptoJException {
 
-        // extend coin type - current path is m/purpose'/coin_type'
-        if (network.isMainNet()) {
-            path = path.extend(new ChildNumber(network.getCoinId(), true));
-        } else {
-            // purpose value of testnet is 1 for all coin types
-            path = path.extend(new ChildNumber(1, true));
+        if (isMnemonicValid(mnemonic) == false) {
+            throw new CryptoJException("Mnemonic is not valid.");
         }
 
-        // extend account & change - m/purpose'/coin_type'/account'/change
-        path = path.extend(new ChildNumber(0, true));
-        path = path.extend(new ChildNumber(0, false));
-
-        DeterministicKeyChain chain = DeterministicKeyChain.builder().seed(seed).build();
-
-        DeterministicKey key = chain.getKeyByPath(path, true);
+        Map<Network, Map<AddressType, PrivateKeyContext>> contexts = PrivateKeyContext.createAll(
+                PrivateKeyContext.createMasterKey(mnemonic, passphrase),
+                networks,
+                addrTypes
+        );
 
-        NetworkParameters params = getNetworkParams(network);
+        Map<Network, Map<AddressType, String>> xPubs = new EnumMap<>(Network.class);
+        for (Map.Entry<Network, Map<AddressType, PrivateKeyContext>> entry : contexts.entrySet()) {
+            Network network = entry.getKey();
+            Map<AddressType, String> networkXPubs = new EnumMap<>(AddressType.class);
+            for (PrivateKeyContext context : entry.getValue().values()) {
+                String xPub = context.xPub();
 
-        String xPub = "";
-        if (addrType.equals(AddressType.P2PKH_LEGACY)) {
-            xPub = key.serializePubB58(params, Script.ScriptType.P2PKH);
-        } else {
-            xPub = key.serializePubB58(params, Script.ScriptType.P2WPKH);
-        }
+                // internal validation
+                if (isXPubValid(network, xPub) == false) {
+                    throw new CryptoJException("Internal validation (xPub) has failed.");
+                }
 
-        // internal validation
-        if (isXPubValid(network, xPub) == false) {
-            throw new CryptoJException("Internal validation (xPub) has failed.");
+                networkXPubs.put(context.getAddrType(), xPub);
+            }
+            xPubs.put(network, networkXPubs);
         }
-
-        return xPub;
+        return xPubs;
     }
 
     /**
@@ -285,12 +335,35 @@ public class CryptoJ {
     ) {
         NetworkParameters params = getNetworkParams(network);
 
-        try {
-            DeterministicKey key = DeterministicKey.deserializeB58(xPub, params);
-            return key.isPubKeyOnly();// extended private key
-        } catch (IllegalArgumentException ex) {
+        // the same checks as DeterministicKey.deserializeB58(..).isPubKeyOnly(), without building the key:
+        // header (4 bytes), depth (1), parent fingerprint (4), child number (4), chain code (32), public key (33)
+        byte[] decoded = new byte[78 + 4];
+        if (Base58Codec.decodeChecked(xPub, decoded) != 78) {
             return false;
         }
+        int header = (decoded[0] & 0xff) << 24 | (decoded[1] & 0xff) << 16 | (decoded[2] & 0xff) << 8 | (decoded[3] & 0xff);
+        if (header != params.getBip32HeaderP2PKHpub() && header != params.getBip32HeaderP2WPKHpub()) {
+            return false; // unknown header or extended private key
+        }
+        return decoded[45] == 0x02 || decoded[45] == 0x03; // compressed public key
+    }
+
+    /**
+     * Parse xPub (extended public key) into {@link XPubHandle} object, which can be reused
+     * to generate many addresses without decoding and validating the xPub again.
+     *
+     * @param network  network
+     * @param addrType address type
+     * @param xPub     xPub to be parsed
+     * @return {@link XPubHandle} object instance
+     * @throws CryptoJException if xPub is invalid or address type does not support HD wallet
+     */
+    public static XPubHandle parseXPub(
+            @NonNull Network network,
+            @NonNull AddressType addrType,
+            @NonNull String xPub
+    ) throws CryptoJException {
+        return new XPubHandle(network, addrType, xPub);
     }
 
 
@@ -313,60 +386,72 @@ public class CryptoJ {
             @NonNull Integer derivationIndex
     ) throws CryptoJException {
 
-        if (isXPubValid(network, xPub) == false) {
-            throw new CryptoJException("Invalid xPub.");
-        }
+        String encodedAddress = parseXPub(network, addrType, xPub).address(derivationIndex);
 
-        if (derivationIndex < 0) {
-            throw new CryptoJException("Invalid derivation index (must be greater or equal to zero).");
+        // internal validation
+        if (isAddressValid(network, encodedAddress) == false) {
+            throw new CryptoJException("Internal validation (address) has failed.");
         }
 
-        NetworkParameters params = getNetworkParams(network);
-
-        DeterministicKey xpubKey = DeterministicKey.deserializeB58(xPub, params);
+        return encodedAddress;
+    }
 
-        DeterministicKey key = HDKeyDerivation.deriveChildKey(xpubKey, new ChildNumber(derivationIndex, false));
+    /**
+     * Generate blockchain addresses for receiving coins for a contiguous range of derivation indexes.<br>
+     * <br>
+     * The xPub is parsed and validated only once for the whole range.
+     *
+     * @param network   network
+     * @param addrType  address type
+     * @param xPub      xpub to generate the addresses from
+     * @param fromIndex first derivation index
+     * @param count     number of addresses to generate
+     * @return addresses for receiving coins, the address of derivation index fromIndex + i is at position i
+     * @throws CryptoJException if method params are invalid or internal validation of generated result fails
+     */
+    public static String[] generateAddresses(
+            @NonNull Network network,
+            @NonNull AddressType addrType,
+            @NonNull String xPub,
+            @NonNull Integer fromIndex,
+            @NonNull Integer count
+    ) throws CryptoJException {
 
-        Script.ScriptType scryptType = Script.ScriptType.P2PKH;
+        String[] addresses = parseXPub(network, addrType, xPub).generateAddresses(fromIndex, count);
 
-        switch (addrType) {
-            case P2PKH_LEGACY:
-                scryptType = Script.ScriptType.P2PKH;
-                break;
-            case P2WPKH_NATIVE_SEGWIT:
-            case P2TR_TAPROOT:
-                scryptType = Script.ScriptType.P2WPKH;
-                break;
-            case P2SH_PAY_TO_SCRIPT_HASH:
-                throw new CryptoJException("P2SH does not support HD wallet");
-            default:
-                throw new CryptoJException("Unsupported address type");
+        // internal validation - every address of the range is encoded the same way, so checking one is enough
+        if (addresses.length > 0 && isAddressValid(network, addresses[0]) == false) {
+            throw new CryptoJException("Internal validation (address) has failed.");
         }
 
-        Address address = Address.fromKey(params, key, scryptType);
-
-        String encodedAddress = "";
-        switch (network.getCoinType()) {
-            case ETH:
-                if (addrType == AddressType.P2PKH_LEGACY) {
-                    byte[] encoded = key.getPubKeyPoint().getEncoded(false);
-                    BigInteger publicKey = new BigInteger(1, Arrays.copyOfRange(encoded, 1, encoded.length));
-                    return Keys.toChecksumAddress(Keys.getAddress(publicKey));
-                }
-            case BTC:
-            case LTC:
-                encodedAddress = address.toString();
-                break;
-            default:
-                throw new CryptoJException("Unsupported network");
-        }
+        return addresses;
+    }
 
-        // internal validation
-        if (isAddressValid(network, encodedAddress) == false) {
-            throw new CryptoJException("Internal validation (address) has failed.");
-        }
+    /**
+     * Lazy stream of blockchain addresses for receiving coins, starting at a derivation index and running
+     * up to the last non-hardened one (2^31 - 1).<br>
+     * <br>
+     * Addresses are derived only as the stream is consumed, so it is meant to be short-circuited, e.g. by
+     * limit(n) or takeWhile(..). The stream is sequential; calling parallel() splits the index range between
+     * threads while keeping the order of derivation indexes.
+     *
+     * @param network    network
+     * @param addrType   address type
+     * @param xPub       xpub to generate the addresses from
+     * @param startIndex first derivation index
+     * @return stream of derived addresses in ascending derivation index order
+     * @throws CryptoJException if method params are invalid
+     */
+    public static Stream<DerivedAddress> addressStream(
+            @NonNull Network network,
+            @NonNull AddressType addrType,
+            @NonNull String xPub,
+            @NonNull Integer startIndex
+    ) throws CryptoJException {
+        XPubHandle.checkDerivationRange(startIndex, 0);
 
-        return encodedAddress;
+        XPubHandle handle = parseXPub(network, addrType, xPub);
+        return StreamSupport.stream(new DerivedAddressSpliterator(handle, startIndex), false);
     }
 
     /**
@@ -380,20 +465,22 @@ public class CryptoJ {
             @NonNull Network network,
             @NonNull String address
     ) {
-        NetworkParameters params = getNetworkParams(network);
-
-        if (network.getCoinType() == CoinType.ETH && address.startsWith("0x")) {
-            // ethereum legacy address
-            return Utils.HEX.canDecode(address.toLowerCase().substring(2)) && // only hexadecimal characters
-                    address.length() == 42; // 20bytes + "0x" = 42 characters
-        }
+        return validateAddress(network, address) == AddressStatus.VALID;
+    }
 
-        try {
-            Address.fromString(params, address);
-            return true;
-        } catch (AddressFormatException ex) {
-            return false;
-        }
+    /**
+     * Validate blockchain address for receiving coins and report why it is not valid. No exception is thrown
+     * for an invalid address, so it is cheap to validate untrusted input.
+     *
+     * @param network network
+     * @param address to be validated
+     * @return {@link AddressStatus#VALID} or the reason why the address is not valid
+     */
+    public static AddressStatus validateAddress(
+            @NonNull Network network,
+            @NonNull String address
+    ) {
+        return AddressValidator.validate(network, address);
     }
 
     /**
@@ -406,13 +493,44 @@ public class CryptoJ {
     public static Collection<Network> isAddressValid(
             @NonNull String address
     ) {
-        Collection<Network> result = new HashSet();
-        for (Network network : Network.values()) {
-            if (isAddressValid(network, address)) {
-                result.add(network);
-            }
+        return AddressClassifier.classify(address).getNetworks();
+    }
+
+    /**
+     * Classify blockchain address across all networks - the address is decoded only once, the networks are matched
+     * by its prefix, version byte or HRP.
+     *
+     * @param address to be classified
+     * @return networks for which the address is valid (empty if it is not valid at all), detected address type
+     * and the hash the address encodes
+     */
+    public static AddressClassification classifyAddress(
+            @NonNull String address
+    ) {
+        return AddressClassifier.classify(address);
+    }
+
+    /**
+     * Decode the hash which the blockchain address encodes - hash160 of public key or script, witness program,
+     * or 20 bytes of Ethereum address. It is the same hash as {@link DerivedAddress#getScriptHash()}.
+     *
+     * @param network network
+     * @param address address to be decoded
+     * @return hash encoded in the address
+     * @throws CryptoJException if the address is not valid for the network
+     */
+    public static byte[] decodeAddressHash(
+            @NonNull Network network,
+            @NonNull String address
+    ) throws CryptoJException {
+        if (isAddressValid(network, address) == false) {
+            throw new CryptoJException("Invalid address.");
         }
-        return Collections.unmodifiableCollection(result);
+
+        if (network.getCoinType() == CoinType.ETH && address.startsWith("0x")) {
+            return Utils.HEX.decode(address.toLowerCase().substring(2));
+        }
+        return Address.fromString(getNetworkParams(network), address).getHash();
     }
 
 
@@ -470,70 +588,55 @@ public class CryptoJ {
             throw new CryptoJException("Invalid mnemonic");
         }
 
-        // fix passphrase
-        if (passphrase == null) {
-            passphrase = "";
-        }
-
         if (derivationIndex < 0) {
             throw new CryptoJException("Invalid derivation index (must be greater or equal to zero).");
         }
 
-        DeterministicSeed seed;
-        try {
-            seed = new DeterministicSeed(mnemonic, null, passphrase, 0);
-        } catch (UnreadableWalletException e) {
-            throw new CryptoJException("Invalid mnemonic");
-        }
-
-        /**
-         * Build HD path
-         * Ref: BIP 44 - https://github.com/bitcoin/bips/blob/master/bip-0044.mediawiki
-         */
-        HDPath path = HDPath.m();
+        String privKey = new PrivateKeyContext(network, addrType, mnemonic, passphrase).privateKey(derivationIndex);
 
-        // extend purpose - m/purpose'
-        path = path.extend(new ChildNumber(addrType.getPurpose(), true));
-
-        // extend coin type - m/purpose'/coin_type'
-        if (network.isMainNet()) {
-            path = path.extend(new ChildNumber(network.getCoinId(), true));
-        } else {
-            // purpose value of testnet is 1 for all coin types
-            path = path.extend(new ChildNumber(1, true));
+        // internal validation
+        if (isPrivateKeyValid(network, privKey) == false) {
+            throw new CryptoJException("Internal validation (private key) has failed.");
         }
 
-        // extend account & change - m/purpose'/coin_type'/account'/change
-        path = path.extend(new ChildNumber(0, true));
-        path = path.extend(new ChildNumber(0, false));
-
-        // extend derivation index
-        path = path.extend(new ChildNumber(derivationIndex, false));
-
-        DeterministicKeyChain chain = DeterministicKeyChain.builder().seed(seed).build();
+        return privKey;
+    }
 
-        DeterministicKey key = chain.getKeyByPath(path, true);
-        NetworkParameters params = getNetworkParams(network);
+    /**
+     * Generate private keys for a contiguous range of derivation indexes.<br>
+     * <br>
+     * The seed and the account node are derived only once for the whole range.
+     *
+     * @param network    network
+     * @param addrType   address type
+     * @param mnemonic   mnemonic
+     * @param passphrase which was used when mnemonic was generated
+     * @param fromIndex  first derivation index
+     * @param count      number of private keys to generate
+     * @return private keys, the private key of derivation index fromIndex + i is at position i
+     * @throws CryptoJException if method params are invalid or internal validation of generated result fails
+     */
+    public static String[] generatePrivateKeys(
+            @NonNull Network network,
+            @NonNull AddressType addrType,
+            @NonNull String mnemonic,
+            String passphrase,
+            @NonNull Integer fromIndex,
+            @NonNull Integer count
+    ) throws CryptoJException {
 
-        String privKey = "";
-        switch (network.getCoinType()) {
-            case BTC:
-            case LTC:
-                privKey = key.getPrivateKeyAsWiF(params);
-                break;
-            case ETH:
-                privKey = "0x" + key.getPrivateKeyAsHex();
-                break;
-            default:
-                throw new CryptoJException("Unsupported network");
+        if (isMnemonicValid(mnemonic) == false) {
+            throw new CryptoJException("Invalid mnemonic");
         }
 
-        // internal validation
-        if (isPrivateKeyValid(network, privKey) == false) {
+        String[] privKeys = new PrivateKeyContext(network, addrType, mnemonic, passphrase).generatePrivateKeys(fromIndex, count);
+
+        // internal validation - every private key of the range is encoded the same way, so checking one is enough
+        if (privKeys.length > 0 && isPrivateKeyValid(network, privKeys[0]) == false) {
             throw new CryptoJException("Internal validation (private key) has failed.");
         }
 
-        return privKey;
+        return privKeys;
     }
 
     /**
@@ -555,6 +658,84 @@ public class CryptoJ {
         }
     }
 
+    /**
+     * Check that the private key owns the address, i.e. the address encodes the hash of its public key.<br>
+     * <br>
+     * Unlike the {@link #signMessage(Network, String, String)} and {@link #verifyMessage(Network, String, String, String)}
+     * round trip, nothing is signed - the key is decoded once, its public key is computed by the fixed-base comb
+     * multiplier and hashed (hash160, or Keccak-256 for Ethereum addresses), and the hash is compared with the
+     * payload of the address. Supports P2PKH and P2WPKH addresses, and Ethereum addresses. It accepts the same
+     * private keys as {@link #parsePrivateKey(Network, String)}.
+     *
+     * @param network    network
+     * @param privateKey private key - WIF, or 0x-prefixed hex of Ethereum
+     * @param address    address
+     * @return true if the private key owns the address, false if not or if any of them is invalid
+     */
+    public static boolean privateKeyMatchesAddress(
+            @NonNull Network network,
+            @NonNull String privateKey,
+            @NonNull String address
+    ) {
+        AddressClassification classification = AddressClassifier.classify(address);
+        if (classification.getNetworks().contains(network) == false) {
+            return false;
+        }
+        boolean ethAddress = network.getCoinType() == CoinType.ETH && address.startsWith("0x");
+        AddressType addrType = classification.getAddrType();
+        if (ethAddress == false && addrType != AddressType.P2PKH_LEGACY && addrType != AddressType.P2WPKH_NATIVE_SEGWIT) {
+            return false;
+        }
+
+        KeyMatchBuffers buffers = KEY_MATCH_BUFFERS.get();
+        byte[] payload = buffers.payload;
+        try {
+            boolean compressed;
+            BigInteger privKey;
+            if (network.getCoinType() == CoinType.ETH) {
+                if (decodeHexPrivateKey(privateKey, payload) == false) {
+                    return false;
+                }
+                compressed = true;
+                privKey = new BigInteger(1, payload, 0, 32);
+            } else {
+                int length = Base58Codec.decodeChecked(privateKey, payload);
+                compressed = length == 34 && payload[33] == 1;
+                if ((length != 33 && compressed == false)
+                        || (payload[0] & 0xff) != getNetworkParams(network).getDumpedPrivateKeyHeader()) {
+                    return false;
+                }
+                privKey = new BigInteger(1, payload, 1, 32);
+            }
+            // as ECKey: 0 and 1 are rejected, 32 bytes values of n and above are reduced mod n
+            if (privKey.signum() == 0 || privKey.equals(BigInteger.ONE)) {
+                return false;
+            }
+            privKey = privKey.mod(ECKey.CURVE.getN());
+            if (privKey.signum() == 0) {
+                return false;
+            }
+            if (addrType == AddressType.P2WPKH_NATIVE_SEGWIT && compressed == false && ethAddress == false) {
+                return false; // segwit requires compressed public key
+            }
+
+            ECPoint point = MULTIPLIER.multiply(ECKey.CURVE.getG(), privKey).normalize();
+            byte[] hash = buffers.hash;
+            if (ethAddress) {
+                byte[] encoded = point.getEncoded(false);
+                buffers.keccak.update(encoded, 1, encoded.length - 1);
+                buffers.keccak.doFinal(buffers.digest, 0);
+                System.arraycopy(buffers.digest, 12, hash, 0, Hash160.HASH_LENGTH); // last 20 bytes
+            } else {
+                byte[] encoded = point.getEncoded(compressed);
+                buffers.hash160.hash160(encoded, 0, encoded.length, hash, 0);
+            }
+            return Arrays.equals(hash, classification.getHash());
+        } finally {
+            Arrays.fill(payload, (byte) 0);
+        }
+    }
+
     /**
      * Parse raw private key into {@link ECKey} object
      *
@@ -685,7 +866,7 @@ public class CryptoJ {
         ECKey pubKey = ECKey.fromPublicOnly(Utils.HEX.decode(publicKey));
 
         // ephemeral = ECPrivkey.generate_random_key()
-        ECKey ephemeral = new ECKey(new SecureRandom());
+        ECKey ephemeral = ECKey.fromPrivate(randomPrivateKey());
 
         // ecdh_key = (self * ephemeral.secret_scalar).get_public_key_bytes(compressed=True)
         byte[] ecdh_key = pubKey.getPubKeyPoint().multiply(ephemeral.getPrivKey()).getEncoded(true);
@@ -987,7 +1168,9 @@ public class CryptoJ {
     // SECTION - OTHERS //
 
     /**
-     * Get network parameters.
+     * Get network parameters.<br>
+     * <br>
+     * There is one immutable instance per network, so the result can be safely used from any thread.
      *
      * @param network from which to get network parameters
      * @return network parameters
@@ -995,34 +1178,112 @@ public class CryptoJ {
     public static NetworkParameters getNetworkParams(
             @NonNull Network network
     ) {
-        IWrappedNetParams wrappedParams = null;
-        NetworkParameters params = null;
+        return NETWORK_PARAMS.get(network);
+    }
 
-        if (network.isMainNet()) {
-            params = WrappedMainNetParams.get();
-            wrappedParams = WrappedMainNetParams.get();
-        } else {
-            params = WrappedTestNetParams.get();
-            wrappedParams = WrappedTestNetParams.get();
+    /**
+     * Enable caching of master keys derived from mnemonics. Repeated calls with the same mnemonic and passphrase
+     * then skip the seed derivation (PBKDF2). Any previously enabled cache is cleared and replaced.
+     *
+     * @param maxEntries max number of cached master keys
+     * @param ttlMillis  time to live of cached master key in milliseconds
+     * @return the enabled cache, e.g. to read its hit/miss counters
+     */
+    public static SeedCache enableSeedCache(
+            int maxEntries,
+            long ttlMillis
+    ) {
+        SeedCache previous = seedCache;
+        seedCache = new SeedCache(maxEntries, ttlMillis);
+        if (previous != null) {
+            previous.clear();
         }
+        return seedCache;
+    }
 
-        wrappedParams.setBIP32Headers(
-                network.getBech32(),
-                network.getPubKeyHash(),
-                network.getScriptHash(),
-                network.getWif(),
-                network.getP2pkhPub(),
-                network.getP2pkhPriv(),
-                network.getP2wpkhPub(),
-                network.getP2wpkhPriv()
-        );
+    /**
+     * Disable caching of master keys derived from mnemonics. Cached key material is zeroed.
+     */
+    public static void disableSeedCache() {
+        SeedCache previous = seedCache;
+        seedCache = null;
+        if (previous != null) {
+            previous.clear();
+        }
+    }
 
-        return params;
+    /**
+     * Get cache of master keys derived from mnemonics.
+     *
+     * @return the enabled cache, or null if caching is disabled
+     */
+    public static SeedCache getSeedCache() {
+        return seedCache;
+    }
+
+    /**
+     * Replace the source of all randomness of CryptoJ - mnemonics, ephemeral keys of encryption, random strings
+     * and salts. The default one is {@link DrbgEntropySource} with per-thread generators.
+     *
+     * @param source entropy source, it must be thread-safe and cryptographically secure
+     */
+    public static void setEntropySource(
+            @NonNull EntropySource source
+    ) {
+        entropySource = source;
+    }
+
+    /**
+     * Get the source of all randomness of CryptoJ.
+     *
+     * @return the entropy source
+     */
+    public static EntropySource getEntropySource() {
+        return entropySource;
     }
 
 
     // SECTION - PRIVATE LOCAL METHODS //
 
+    /**
+     * Random private key from the entropy source, uniformly distributed in [1, n-1].
+     */
+    private static BigInteger randomPrivateKey() {
+        byte[] bytes = new byte[32];
+        try {
+            while (true) {
+                entropySource.nextBytes(bytes);
+                BigInteger privKey = new BigInteger(1, bytes);
+                if (privKey.signum() > 0 && privKey.compareTo(ECKey.CURVE.getN()) < 0) {
+                    return privKey;
+                }
+            }
+        } finally {
+            Arrays.fill(bytes, (byte) 0);
+        }
+    }
+
+    /**
+     * Decode 0x-prefixed hex of any even length (as {@link #parsePrivateKey(Network, String)} accepts it) into
+     * 32 bytes, right-aligned. Leading zero bytes beyond 32 bytes are skipped, a longer value does not fit.
+     */
+    private static boolean decodeHexPrivateKey(String privateKey, byte[] out) {
+        int length = privateKey.length();
+        if (length < 2 || privateKey.charAt(0) != '0' || Character.toLowerCase(privateKey.charAt(1)) != 'x' || (length & 1) != 0) {
+            return false;
+        }
+        int start = 2;
+        while (length - start > 64 && privateKey.charAt(start) == '0' && privateKey.charAt(start + 1) == '0') {
+            start += 2;
+        }
+        if (length - start > 64) {
+            return false;
+        }
+        int bytes = (length - start) / 2;
+        Arrays.fill(out, 0, 32 - bytes, (byte) 0);
+        return HexCodec.decode(privateKey, start, length - start, out, 32 - bytes) == bytes;
+    }
+
     private static String doSignBitcoinBasedTransaction(
             @NonNull Network network,
             @NonNull UTXObject[] utxobjects,
@@ -1088,7 +1349,7 @@ public class CryptoJ {
         trans.getConfidence().setSource(TransactionConfidence.Source.SELF);
         trans.setPurpose(Transaction.Purpose.USER_PAYMENT);
 
-        return Utils.HEX.encode(trans.bitcoinSerialize());
+        return HexCodec.encode(trans.bitcoinSerialize());
     }
 
     private static String doSignEthereumBasedTransaction(
@@ -1169,4 +1430,18 @@ public class CryptoJ {
         return true;
     }
 
+    /**
+     * Working memory of {@link #privateKeyMatchesAddress(Network, String, String)}, one instance per thread.
+     */
+    @FieldDefaults(level = PRIVATE, makeFinal = true)
+    private static class KeyMatchBuffers {
+
+        byte[] payload = new byte[1 + 32 + 1 + 4]; // version, key, suffix and checksum of WIF
+        byte[] hash = new byte[Hash160.HASH_LENGTH];
+        byte[] digest = new byte[32];
+        Hash160 hash160 = new Hash160();
+        KeccakDigest keccak = new KeccakDigest(256);
+
+    }
+
 }
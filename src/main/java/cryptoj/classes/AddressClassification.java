@@ -0,0 +1,50 @@
+package cryptoj.classes;
+
+import cryptoj.enums.AddressType;
+import cryptoj.enums.Network;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Set;
+
+import static lombok.AccessLevel.PRIVATE;
+
+@Getter
+@ToString
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class AddressClassification {
+
+    @NonNull Set<Network> networks;
+    AddressType addrType;
+    @ToString.Exclude
+    byte[] hash;
+
+    /**
+     * Result of address classification.
+     *
+     * @param networks networks for which the address is valid, empty if it is not valid at all
+     * @param addrType detected address type, null if the address is not valid or its type is none of
+     *                 {@link AddressType} (e.g. P2WSH or future witness versions)
+     * @param hash     hash the address encodes - hash160 of public key or script, witness program, or 20 bytes of
+     *                 Ethereum address - null if the address is not valid, must not be modified
+     */
+    public AddressClassification(
+            @NonNull Set<Network> networks,
+            AddressType addrType,
+            byte[] hash
+    ) {
+        this.networks = networks;
+        this.addrType = addrType;
+        this.hash = hash;
+    }
+
+    /**
+     * @return true if the address is valid for at least one network
+     */
+    public boolean isValid() {
+        return networks.isEmpty() == false;
+    }
+
+}
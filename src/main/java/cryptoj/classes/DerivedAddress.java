@@ -0,0 +1,40 @@
+package cryptoj.classes;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+import static lombok.AccessLevel.PRIVATE;
+
+@Getter
+@ToString
+@EqualsAndHashCode
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class DerivedAddress {
+
+    int derivationIndex;
+    @NonNull String address;
+    @ToString.Exclude
+    @NonNull byte[] scriptHash;
+
+    /**
+     * Address derived from xPub.
+     *
+     * @param derivationIndex derivation index
+     * @param address         address for receiving coins
+     * @param scriptHash      20 bytes long hash the address encodes - hash160 of public key (legacy and
+     *                        segwit witness program), or Keccak-256 based address of Ethereum, must not be modified
+     */
+    public DerivedAddress(
+            int derivationIndex,
+            @NonNull String address,
+            @NonNull byte[] scriptHash
+    ) {
+        this.derivationIndex = derivationIndex;
+        this.address = address;
+        this.scriptHash = scriptHash;
+    }
+
+}
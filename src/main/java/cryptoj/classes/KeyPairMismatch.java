@@ -0,0 +1,52 @@
+package cryptoj.classes;
+
+import cryptoj.enums.AddressType;
+import cryptoj.enums.Network;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+import static lombok.AccessLevel.PRIVATE;
+
+@Getter
+@ToString
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class KeyPairMismatch {
+
+    @NonNull Network network;
+    @NonNull AddressType addrType;
+    int derivationIndex;
+    @NonNull String address;
+    @ToString.Exclude
+    @NonNull byte[] privateKeyHash;
+    @ToString.Exclude
+    @NonNull byte[] addressHash;
+
+    /**
+     * Derivation index whose private key does not match its address.
+     *
+     * @param network         network
+     * @param addrType        address type
+     * @param derivationIndex derivation index
+     * @param address         address derived from xPub
+     * @param privateKeyHash  hash of the public key computed from the private key, must not be modified
+     * @param addressHash     hash the address encodes, must not be modified
+     */
+    public KeyPairMismatch(
+            @NonNull Network network,
+            @NonNull AddressType addrType,
+            int derivationIndex,
+            @NonNull String address,
+            @NonNull byte[] privateKeyHash,
+            @NonNull byte[] addressHash
+    ) {
+        this.network = network;
+        this.addrType = addrType;
+        this.derivationIndex = derivationIndex;
+        this.address = address;
+        this.privateKeyHash = privateKeyHash;
+        this.addressHash = addressHash;
+    }
+
+}
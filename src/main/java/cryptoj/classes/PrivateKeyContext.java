@@ -0,0 +1,448 @@
+package cryptoj.classes;
+
+import cryptoj.CryptoJ;
+import cryptoj.enums.AddressType;
+import cryptoj.enums.CoinType;
+import cryptoj.enums.Network;
+import cryptoj.exceptions.CryptoJException;
+import cryptoj.tools.Base58Codec;
+import cryptoj.tools.Hash160;
+import cryptoj.tools.HexCodec;
+import cryptoj.tools.HmacSha512;
+import cryptoj.tools.Pbkdf2Sha512;
+import cryptoj.tools.SeedCache;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Utils;
+import org.bitcoinj.crypto.ChildNumber;
+import org.bitcoinj.crypto.DeterministicKey;
+import org.bitcoinj.crypto.HDKeyDerivation;
+import org.bitcoinj.script.Script;
+import org.bouncycastle.crypto.digests.KeccakDigest;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static lombok.AccessLevel.NONE;
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Account node (m/purpose'/coin_type'/account'/change) derived from mnemonic, ready for repeated
+ * private key derivation.<br>
+ * <br>
+ * The seed and the hardened part of the path are derived only once, when the context is created.
+ * Each call of {@link #privateKey(int)} then costs just one HMAC-SHA512 with the chain code prepared in advance,
+ * one modular addition and the key encoding - the child public key is never computed.<br>
+ * Ref: BIP 44 - https://github.com/bitcoin/bips/blob/master/bip-0044.mediawiki
+ */
+@Getter
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class PrivateKeyContext {
+
+    private static final int NORMALIZATION_BATCH_SIZE = 64;
+    private static final FixedPointCombMultiplier MULTIPLIER = new FixedPointCombMultiplier();
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    Network network;
+    AddressType addrType;
+    int account;
+    @Getter(NONE)
+    DeterministicKey accountKey;
+    @Getter(NONE)
+    byte[] accountPubKey;
+    @Getter(NONE)
+    BigInteger accountPrivKey;
+    @Getter(NONE)
+    HmacSha512 chainCodeMac;
+
+    /**
+     * Derive account node from mnemonic.
+     *
+     * @param network    network
+     * @param addrType   address type
+     * @param mnemonic   mnemonic
+     * @param passphrase which was used when mnemonic was generated
+     * @throws CryptoJException if mnemonic is invalid or address type does not support HD wallet
+     */
+    public PrivateKeyContext(
+            @NonNull Network network,
+            @NonNull AddressType addrType,
+            @NonNull String mnemonic,
+            String passphrase
+    ) throws CryptoJException {
+        this(network, addrType, createMasterKey(mnemonic, passphrase));
+    }
+
+    /**
+     * Derive account node from master (root) key.
+     *
+     * @param network   network
+     * @param addrType  address type
+     * @param masterKey master private key (m)
+     * @throws CryptoJException if address type does not support HD wallet
+     */
+    public PrivateKeyContext(
+            @NonNull Network network,
+            @NonNull AddressType addrType,
+            @NonNull DeterministicKey masterKey
+    ) throws CryptoJException {
+        this(network, addrType, masterKey, 0);
+    }
+
+    /**
+     * Derive node of a specific account from master (root) key.
+     *
+     * @param network   network
+     * @param addrType  address type
+     * @param masterKey master private key (m)
+     * @param account   account index (BIP 44), the first account is 0
+     * @throws CryptoJException if address type does not support HD wallet or account index is invalid
+     */
+    public PrivateKeyContext(
+            @NonNull Network network,
+            @NonNull AddressType addrType,
+            @NonNull DeterministicKey masterKey,
+            int account
+    ) throws CryptoJException {
+        if (addrType.getPurpose() < 0) {
+            throw new CryptoJException("P2SH does not support HD wallet");
+        }
+        if (account < 0) {
+            throw new CryptoJException("Invalid account (must be greater or equal to zero).");
+        }
+
+        DeterministicKey accountKey = deriveAccountKey(derivePurposeKey(masterKey, addrType), network, account);
+        this.network = network;
+        this.addrType = addrType;
+        this.account = account;
+        this.accountKey = accountKey;
+        this.accountPubKey = accountKey.getPubKey();
+        this.accountPrivKey = accountKey.getPrivKey();
+        this.chainCodeMac = new HmacSha512(accountKey.getChainCode());
+    }
+
+    private PrivateKeyContext(
+            DeterministicKey accountKey,
+            Network network,
+            AddressType addrType
+    ) {
+        this.network = network;
+        this.addrType = addrType;
+        this.account = 0;
+        this.accountKey = accountKey;
+        this.accountPubKey = accountKey.getPubKey();
+        this.accountPrivKey = accountKey.getPrivKey();
+        this.chainCodeMac = new HmacSha512(accountKey.getChainCode());
+    }
+
+    /**
+     * Derive account nodes for all combinations of networks and address types from one master key.<br>
+     * <br>
+     * Common hardened prefixes of the paths are derived only once, e.g. m/purpose' is shared by all networks
+     * and m/purpose'/1'/0'/0 is shared by all testnets.
+     *
+     * @param masterKey master private key (m)
+     * @param networks  networks
+     * @param addrTypes address types
+     * @return contexts of every requested network and address type
+     * @throws CryptoJException if some of address types does not support HD wallet
+     */
+    public static Map<Network, Map<AddressType, PrivateKeyContext>> createAll(
+            @NonNull DeterministicKey masterKey,
+            @NonNull Set<Network> networks,
+            @NonNull Set<AddressType> addrTypes
+    ) throws CryptoJException {
+        Map<Network, Map<AddressType, PrivateKeyContext>> contexts = new EnumMap<>(Network.class);
+        for (Network network : networks) {
+            contexts.put(network, new EnumMap<>(AddressType.class));
+        }
+
+        for (AddressType addrType : addrTypes) {
+            if (addrType.getPurpose() < 0) {
+                throw new CryptoJException("P2SH does not support HD wallet");
+            }
+
+            DeterministicKey purposeKey = derivePurposeKey(masterKey, addrType);
+            Map<Integer, DeterministicKey> accountKeys = new HashMap<>(); // by coin type
+            for (Network network : networks) {
+                DeterministicKey accountKey = accountKeys.get(getCoinType(network));
+                if (accountKey == null) {
+                    accountKey = deriveAccountKey(purposeKey, network, 0);
+                    accountKeys.put(getCoinType(network), accountKey);
+                }
+                contexts.get(network).put(addrType, new PrivateKeyContext(accountKey, network, addrType));
+            }
+        }
+        return contexts;
+    }
+
+    /**
+     * Create master (root) private key from mnemonic.
+     *
+     * @param mnemonic   mnemonic
+     * @param passphrase which was used when mnemonic was generated
+     * @return master private key (m)
+     * @throws CryptoJException if mnemonic is invalid
+     */
+    public static DeterministicKey createMasterKey(
+            @NonNull String mnemonic,
+            String passphrase
+    ) throws CryptoJException {
+        // fix passphrase
+        if (passphrase == null) {
+            passphrase = "";
+        }
+
+        SeedCache seedCache = CryptoJ.getSeedCache();
+        if (seedCache != null) {
+            DeterministicKey masterKey = seedCache.get(mnemonic, passphrase);
+            if (masterKey != null) {
+                return masterKey;
+            }
+        }
+
+        if (CryptoJ.isMnemonicValid(mnemonic) == false) {
+            throw new CryptoJException("Invalid mnemonic");
+        }
+
+        byte[] seed = Pbkdf2Sha512.deriveSeed(mnemonic, passphrase);
+        DeterministicKey masterKey = HDKeyDerivation.createMasterPrivateKey(seed);
+        Arrays.fill(seed, (byte) 0);
+
+        if (seedCache != null) {
+            seedCache.put(mnemonic, passphrase, masterKey);
+        }
+        return masterKey;
+    }
+
+    /**
+     * Get xPub (extended public key) of the account node.
+     *
+     * @return extened public key
+     */
+    public String xPub() {
+        NetworkParameters params = CryptoJ.getNetworkParams(network);
+        if (addrType.equals(AddressType.P2PKH_LEGACY)) {
+            return accountKey.serializePubB58(params, Script.ScriptType.P2PKH);
+        } else {
+            return accountKey.serializePubB58(params, Script.ScriptType.P2WPKH);
+        }
+    }
+
+    /**
+     * Generate private key for an address.
+     *
+     * @param derivationIndex of the address which to generate the private key for
+     * @return private key of the address on specific derivation index
+     * @throws CryptoJException if derivation index is invalid
+     */
+    public String privateKey(
+            int derivationIndex
+    ) throws CryptoJException {
+        if (derivationIndex < 0) {
+            throw new CryptoJException("Invalid derivation index (must be greater or equal to zero).");
+        }
+
+        Buffers buffers = BUFFERS.get();
+        return encode(deriveChildKey(derivationIndex, buffers.data, buffers.mac, buffers.scratch), buffers);
+    }
+
+    /**
+     * Generate private keys for a contiguous range of derivation indexes.
+     *
+     * @param fromIndex first derivation index
+     * @param count     number of private keys to generate
+     * @return private keys, the private key of derivation index fromIndex + i is at position i
+     * @throws CryptoJException if derivation index range is invalid
+     */
+    public String[] generatePrivateKeys(
+            int fromIndex,
+            int count
+    ) throws CryptoJException {
+        XPubHandle.checkDerivationRange(fromIndex, count);
+
+        String[] privKeys = new String[count];
+        Buffers buffers = BUFFERS.get();
+        for (int i = 0; i < count; i++) {
+            privKeys[i] = encode(deriveChildKey(fromIndex + i, buffers.data, buffers.mac, buffers.scratch), buffers);
+        }
+        return privKeys;
+    }
+
+    /**
+     * Compute the hashes the addresses encode - Keccak-256 based address of Ethereum, otherwise hash160 of the
+     * compressed public key - for a contiguous range of derivation indexes from the private keys.<br>
+     * <br>
+     * Unlike {@link XPubHandle}, the public keys are computed from the derived private keys (k_i * G), so
+     * comparing both results verifies that the private keys match the addresses without signing anything.
+     *
+     * @param fromIndex first derivation index
+     * @param count     number of hashes to compute
+     * @param target    array to write the 20 bytes long hashes to
+     * @param offset    position in the target array where the hash of derivation index fromIndex is written,
+     *                  the hash of derivation index fromIndex + i starts at offset + 20 * i
+     * @throws CryptoJException if derivation index range is invalid or does not fit into the target array
+     */
+    public void generatePublicKeyHashes(
+            int fromIndex,
+            int count,
+            @NonNull byte[] target,
+            int offset
+    ) throws CryptoJException {
+        XPubHandle.checkDerivationRange(fromIndex, count);
+        if (offset < 0 || offset > target.length - (long) count * Hash160.HASH_LENGTH) {
+            throw new CryptoJException("Invalid target array offset.");
+        }
+
+        boolean keccak = network.getCoinType() == CoinType.ETH && addrType == AddressType.P2PKH_LEGACY;
+        ECPoint[] points = new ECPoint[Math.min(count, NORMALIZATION_BATCH_SIZE)];
+        Buffers buffers = BUFFERS.get();
+        for (int done = 0; done < count; ) {
+            int size = Math.min(points.length, count - done);
+            for (int i = 0; i < size; i++) {
+                BigInteger privKey = deriveChildKey(fromIndex + done + i, buffers.data, buffers.mac, buffers.scratch);
+                points[i] = MULTIPLIER.multiply(ECKey.CURVE.getG(), privKey);
+            }
+            ECKey.CURVE.getCurve().normalizeAll(points, 0, size, null);
+            if (keccak) {
+                for (int i = 0; i < size; i++) {
+                    byte[] encoded = points[i].getEncoded(false);
+                    buffers.keccak.update(encoded, 1, encoded.length - 1);
+                    buffers.keccak.doFinal(buffers.digest, 0);
+                    System.arraycopy(buffers.digest, 12, target, offset + (done + i) * Hash160.HASH_LENGTH, Hash160.HASH_LENGTH); // last 20 bytes
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    buffers.pubKeys[i] = points[i].getEncoded(true);
+                }
+                buffers.hash160.hash160(buffers.pubKeys, size, target, offset + done * Hash160.HASH_LENGTH); // lane-parallel if available
+            }
+            done += size;
+        }
+    }
+
+    private static DeterministicKey derivePurposeKey(
+            DeterministicKey masterKey,
+            AddressType addrType
+    ) {
+        // extend purpose - m/purpose'
+        return HDKeyDerivation.deriveChildKey(masterKey, new ChildNumber(addrType.getPurpose(), true));
+    }
+
+    private static DeterministicKey deriveAccountKey(
+            DeterministicKey purposeKey,
+            Network network,
+            int account
+    ) {
+        // extend coin type - m/purpose'/coin_type'
+        DeterministicKey key = HDKeyDerivation.deriveChildKey(purposeKey, new ChildNumber(getCoinType(network), true));
+
+        // extend account & change - m/purpose'/coin_type'/account'/change
+        key = HDKeyDerivation.deriveChildKey(key, new ChildNumber(account, true));
+        return HDKeyDerivation.deriveChildKey(key, new ChildNumber(0, false));
+    }
+
+    private static int getCoinType(Network network) {
+        if (network.isMainNet()) {
+            return network.getCoinId();
+        }
+        // purpose value of testnet is 1 for all coin types
+        return 1;
+    }
+
+    /**
+     * Private child key derivation (CKDpriv) of a non-hardened child, k_i = (I_L + k_par) mod n.
+     */
+    private BigInteger deriveChildKey(
+            int derivationIndex,
+            byte[] data,
+            byte[] i,
+            long[] scratch
+    ) throws CryptoJException {
+        XPubHandle.childMac(chainCodeMac, accountPubKey, derivationIndex, data, i, scratch);
+
+        BigInteger il = new BigInteger(1, i, 0, 32);
+        if (il.compareTo(ECKey.CURVE.getN()) >= 0) {
+            throw new CryptoJException("Illegal derived key: I_L >= n (derivation index " + derivationIndex + ")");
+        }
+        BigInteger privKey = il.add(accountPrivKey).mod(ECKey.CURVE.getN());
+        if (privKey.signum() == 0) {
+            throw new CryptoJException("Illegal derived key: derived private key equals 0 (derivation index " + derivationIndex + ")");
+        }
+        return privKey;
+    }
+
+    /**
+     * Encode the private key into the reused buffers - only the resulting string is allocated.
+     */
+    private String encode(
+            BigInteger privKey,
+            Buffers buffers
+    ) throws CryptoJException {
+        byte[] privKeyBytes = Utils.bigIntegerToBytes(privKey, 32);
+        char[] chars = buffers.chars;
+        int length;
+        switch (network.getCoinType()) {
+            case BTC:
+            case LTC:
+                // WIF of compressed key - version, 32 bytes of key and 0x01 suffix
+                buffers.payload[0] = (byte) CryptoJ.getNetworkParams(network).getDumpedPrivateKeyHeader();
+                System.arraycopy(privKeyBytes, 0, buffers.payload, 1, 32);
+                buffers.payload[33] = 1;
+                length = Base58Codec.encodeChecked(buffers.payload, 34, buffers.sha256, chars, 0, buffers.limbs);
+                break;
+            case ETH:
+                chars[0] = '0';
+                chars[1] = 'x';
+                length = 2 + HexCodec.encode(privKeyBytes, 0, 32, chars, 2);
+                break;
+            default:
+                throw new CryptoJException("Unsupported network");
+        }
+        try {
+            if (length < 0) {
+                throw new CryptoJException("Private key encoding has failed.");
+            }
+            return new String(chars, 0, length);
+        } finally {
+            // the buffers outlive the call, do not keep the key in them
+            Arrays.fill(buffers.payload, (byte) 0);
+            Arrays.fill(chars, '\0');
+        }
+    }
+
+    /**
+     * Working memory of derivation calls - digests and buffers are created once per thread, as a call never
+     * calls another one while using them.
+     */
+    @FieldDefaults(level = PRIVATE, makeFinal = true)
+    private static class Buffers {
+
+        byte[] data = new byte[37];
+        byte[] mac = new byte[HmacSha512.MAC_LENGTH];
+        long[] scratch = new long[88];
+
+        char[] chars = new char[2 + 64]; // "0x" and 32 bytes in hex, longer than WIF
+        byte[] payload = new byte[1 + 32 + 1 + 32]; // version, key, suffix and room for the checksum computation
+        int[] limbs = new int[Base58Codec.limbsLength(1 + 32 + 1 + 4)];
+        MessageDigest sha256 = Sha256Hash.newDigest();
+
+        Hash160 hash160 = new Hash160();
+        byte[][] pubKeys = new byte[NORMALIZATION_BATCH_SIZE][];
+        KeccakDigest keccak = new KeccakDigest(256);
+        byte[] digest = new byte[32];
+
+    }
+
+}
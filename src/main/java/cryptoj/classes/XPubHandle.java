@@ -0,0 +1,459 @@
+package cryptoj.classes;
+
+import cryptoj.CryptoJ;
+import cryptoj.enums.AddressType;
+import cryptoj.enums.CoinType;
+import cryptoj.enums.Network;
+import cryptoj.exceptions.CryptoJException;
+import cryptoj.tools.Base58Codec;
+import cryptoj.tools.Bech32Codec;
+import cryptoj.tools.Hash160;
+import cryptoj.tools.HexCodec;
+import cryptoj.tools.HmacSha512;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.crypto.DeterministicKey;
+import org.bitcoinj.script.Script;
+import org.bouncycastle.crypto.digests.KeccakDigest;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import static lombok.AccessLevel.NONE;
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Parsed and validated xPub (extended public key), ready for repeated address derivation.<br>
+ * <br>
+ * The xPub is decoded, checksum-verified and validated only once, when the handle is created.
+ * Each call of {@link #address(int)} then costs just one child key derivation and the address encoding.
+ * HMAC-SHA512 keyed by the chain code is prepared once too, so a child costs only the message compressions.
+ * Bulk derivation additionally normalizes the derived points in batches, and hashes and encodes the addresses
+ * with reused digests and buffers.
+ */
+@Getter
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class XPubHandle {
+
+    private static final int NORMALIZATION_BATCH_SIZE = 64;
+    private static final FixedPointCombMultiplier MULTIPLIER = new FixedPointCombMultiplier();
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    Network network;
+    AddressType addrType;
+    String xPub;
+    DeterministicKey key;
+    Script.ScriptType scriptType;
+    NetworkParameters params;
+
+    @Getter(NONE)
+    byte[] parentPubKey;
+    @Getter(NONE)
+    ECPoint parentPoint;
+    @Getter(NONE)
+    HmacSha512 chainCodeMac;
+
+    /**
+     * Parse xPub (extended public key) for address derivation.
+     *
+     * @param network  network
+     * @param addrType address type
+     * @param xPub     xpub to generate the addresses from
+     * @throws CryptoJException if xPub is invalid or address type does not support HD wallet
+     */
+    public XPubHandle(
+            @NonNull Network network,
+            @NonNull AddressType addrType,
+            @NonNull String xPub
+    ) throws CryptoJException {
+        switch (addrType) {
+            case P2PKH_LEGACY:
+                this.scriptType = Script.ScriptType.P2PKH;
+                break;
+            case P2WPKH_NATIVE_SEGWIT:
+            case P2TR_TAPROOT:
+                this.scriptType = Script.ScriptType.P2WPKH;
+                break;
+            case P2SH_PAY_TO_SCRIPT_HASH:
+                throw new CryptoJException("P2SH does not support HD wallet");
+            default:
+                throw new CryptoJException("Unsupported address type");
+        }
+
+        NetworkParameters params = CryptoJ.getNetworkParams(network);
+        DeterministicKey key;
+        try {
+            key = DeterministicKey.deserializeB58(xPub, params);
+        } catch (IllegalArgumentException ex) {
+            throw new CryptoJException("Invalid xPub.");
+        }
+        if (key.isPubKeyOnly() == false) { // extended private key
+            throw new CryptoJException("Invalid xPub.");
+        }
+
+        this.network = network;
+        this.addrType = addrType;
+        this.xPub = xPub;
+        this.key = key;
+        this.params = params;
+        this.parentPubKey = key.getPubKey();
+        this.parentPoint = key.getPubKeyPoint().normalize(); // affine, so each child costs only a mixed addition
+        this.chainCodeMac = new HmacSha512(key.getChainCode());
+    }
+
+    /**
+     * Generate blockchain address for receiving coins.
+     *
+     * @param derivationIndex derivation index
+     * @return address for receiving coins
+     * @throws CryptoJException if derivation index is invalid
+     */
+    public String address(
+            int derivationIndex
+    ) throws CryptoJException {
+        if (derivationIndex < 0) {
+            throw new CryptoJException("Invalid derivation index (must be greater or equal to zero).");
+        }
+
+        Buffers buffers = BUFFERS.get();
+        ECPoint point = deriveChildPoint(derivationIndex, buffers.data, buffers.mac, buffers.scratch).normalize();
+        return encode(hash(point, buffers, buffers.hash), 0, buffers);
+    }
+
+    /**
+     * Generate blockchain address for receiving coins together with the hash it encodes.
+     *
+     * @param derivationIndex derivation index
+     * @return derived address
+     * @throws CryptoJException if derivation index is invalid
+     */
+    public DerivedAddress derivedAddress(
+            int derivationIndex
+    ) throws CryptoJException {
+        if (derivationIndex < 0) {
+            throw new CryptoJException("Invalid derivation index (must be greater or equal to zero).");
+        }
+
+        Buffers buffers = BUFFERS.get();
+        ECPoint point = deriveChildPoint(derivationIndex, buffers.data, buffers.mac, buffers.scratch).normalize();
+        byte[] hash = hash(point, buffers, new byte[20]);
+        return new DerivedAddress(derivationIndex, encode(hash, 0, buffers), hash);
+    }
+
+    /**
+     * Generate blockchain addresses for receiving coins for a contiguous range of derivation indexes.
+     *
+     * @param fromIndex first derivation index
+     * @param count     number of addresses to generate
+     * @return addresses for receiving coins, the address of derivation index fromIndex + i is at position i
+     * @throws CryptoJException if derivation index range is invalid
+     */
+    public String[] generateAddresses(
+            int fromIndex,
+            int count
+    ) throws CryptoJException {
+        checkDerivationRange(fromIndex, count);
+
+        String[] addresses = new String[count];
+        generateAddresses(fromIndex, count, addresses, 0);
+        return addresses;
+    }
+
+    /**
+     * Generate blockchain addresses for receiving coins for a contiguous range of derivation indexes
+     * into a pre-sized array.
+     *
+     * @param fromIndex first derivation index
+     * @param count     number of addresses to generate
+     * @param target    array to write the addresses to
+     * @param offset    position in the target array where the address of derivation index fromIndex is written
+     * @throws CryptoJException if derivation index range is invalid or does not fit into the target array
+     */
+    public void generateAddresses(
+            int fromIndex,
+            int count,
+            @NonNull String[] target,
+            int offset
+    ) throws CryptoJException {
+        checkDerivationRange(fromIndex, count);
+        if (offset < 0 || offset > target.length - count) {
+            throw new CryptoJException("Invalid target array offset.");
+        }
+
+        ECPoint[] points = new ECPoint[Math.min(count, NORMALIZATION_BATCH_SIZE)];
+        Buffers buffers = BUFFERS.get();
+        for (int done = 0; done < count; ) {
+            int size = Math.min(points.length, count - done);
+            deriveNormalizedPoints(fromIndex + done, points, size, buffers);
+            hashes(points, size, buffers);
+            for (int i = 0; i < size; i++) {
+                target[offset + done + i] = encode(buffers.hashes, i * Hash160.HASH_LENGTH, buffers);
+            }
+            done += size;
+        }
+    }
+
+    /**
+     * Generate blockchain addresses for receiving coins together with the hashes they encode for a contiguous
+     * range of derivation indexes into a pre-sized array.
+     *
+     * @param fromIndex first derivation index
+     * @param count     number of addresses to generate
+     * @param target    array to write the derived addresses to
+     * @param offset    position in the target array where the address of derivation index fromIndex is written
+     * @throws CryptoJException if derivation index range is invalid or does not fit into the target array
+     */
+    public void generateDerivedAddresses(
+            int fromIndex,
+            int count,
+            @NonNull DerivedAddress[] target,
+            int offset
+    ) throws CryptoJException {
+        checkDerivationRange(fromIndex, count);
+        if (offset < 0 || offset > target.length - count) {
+            throw new CryptoJException("Invalid target array offset.");
+        }
+
+        ECPoint[] points = new ECPoint[Math.min(count, NORMALIZATION_BATCH_SIZE)];
+        Buffers buffers = BUFFERS.get();
+        for (int done = 0; done < count; ) {
+            int size = Math.min(points.length, count - done);
+            deriveNormalizedPoints(fromIndex + done, points, size, buffers);
+            hashes(points, size, buffers);
+            for (int i = 0; i < size; i++) {
+                int from = i * Hash160.HASH_LENGTH;
+                byte[] hash = Arrays.copyOfRange(buffers.hashes, from, from + Hash160.HASH_LENGTH);
+                target[offset + done + i] = new DerivedAddress(fromIndex + done + i, encode(hash, 0, buffers), hash);
+            }
+            done += size;
+        }
+    }
+
+    /**
+     * Derive child points of size consecutive derivation indexes starting at fromIndex. The points are normalized
+     * all at once, which costs one field inversion per batch instead of per point.
+     */
+    private void deriveNormalizedPoints(
+            int fromIndex,
+            ECPoint[] points,
+            int size,
+            Buffers buffers
+    ) throws CryptoJException {
+        for (int i = 0; i < size; i++) {
+            points[i] = deriveChildPoint(fromIndex + i, buffers.data, buffers.mac, buffers.scratch);
+        }
+        ECKey.CURVE.getCurve().normalizeAll(points, 0, size, null);
+    }
+
+    /**
+     * Public child key derivation (CKDpub) of a non-hardened child.<br>
+     * <br>
+     * I_L * G uses the fixed-base comb multiplier with precomputed table of the generator, and the parent
+     * point is kept affine, so adding it is a mixed Jacobian-affine addition. The result is left in Jacobian
+     * coordinates, the caller decides when to normalize it.
+     */
+    private ECPoint deriveChildPoint(
+            int derivationIndex,
+            byte[] data,
+            byte[] i,
+            long[] scratch
+    ) throws CryptoJException {
+        childMac(chainCodeMac, parentPubKey, derivationIndex, data, i, scratch);
+
+        BigInteger il = new BigInteger(1, i, 0, 32);
+        if (il.compareTo(ECKey.CURVE.getN()) >= 0) {
+            throw new CryptoJException("Illegal derived key: I_L >= n (derivation index " + derivationIndex + ")");
+        }
+        ECPoint point = MULTIPLIER.multiply(ECKey.CURVE.getG(), il).add(parentPoint);
+        if (point.isInfinity()) {
+            throw new CryptoJException("Illegal derived key: derived public key equals infinity (derivation index " + derivationIndex + ")");
+        }
+        return point;
+    }
+
+    /**
+     * Hash of the public key the address encodes - Keccak-256 based address of Ethereum, otherwise hash160.
+     * The digests are reused from the buffers, the hash is written to out.
+     */
+    private byte[] hash(
+            ECPoint point,
+            Buffers buffers,
+            byte[] out
+    ) {
+        if (network.getCoinType() == CoinType.ETH && addrType == AddressType.P2PKH_LEGACY) {
+            byte[] encoded = point.getEncoded(false);
+            buffers.keccak.update(encoded, 1, encoded.length - 1);
+            buffers.keccak.doFinal(buffers.digest, 0);
+            System.arraycopy(buffers.digest, 12, out, 0, 20); // last 20 bytes
+        } else {
+            buffers.hash160.hash160(point.getEncoded(true), 0, 33, out, 0);
+        }
+        return out;
+    }
+
+    /**
+     * Hashes of the public keys of size normalized points into buffers.hashes - the compressed public keys of a
+     * batch are hashed together, lane-parallel if the {@link Hash160} lane engine is available.
+     */
+    private void hashes(
+            ECPoint[] points,
+            int size,
+            Buffers buffers
+    ) {
+        if (network.getCoinType() == CoinType.ETH && addrType == AddressType.P2PKH_LEGACY) {
+            for (int i = 0; i < size; i++) {
+                hash(points[i], buffers, buffers.hash);
+                System.arraycopy(buffers.hash, 0, buffers.hashes, i * Hash160.HASH_LENGTH, Hash160.HASH_LENGTH);
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                buffers.pubKeys[i] = points[i].getEncoded(true);
+            }
+            buffers.hash160.hash160(buffers.pubKeys, size, buffers.hashes, 0);
+        }
+    }
+
+    /**
+     * Encode the address of the 20 bytes long hash at the offset into the reused buffers - only the resulting
+     * string is allocated.
+     */
+    private String encode(
+            byte[] hash,
+            int offset,
+            Buffers buffers
+    ) throws CryptoJException {
+        char[] chars = buffers.chars;
+        int length;
+        switch (network.getCoinType()) {
+            case ETH:
+                if (addrType == AddressType.P2PKH_LEGACY) {
+                    chars[0] = '0';
+                    chars[1] = 'x';
+                    length = 2 + HexCodec.encode(hash, offset, Hash160.HASH_LENGTH, chars, 2);
+                    applyChecksumCase(chars, length, buffers);
+                    break;
+                }
+            case BTC:
+            case LTC:
+                if (scriptType == Script.ScriptType.P2PKH) {
+                    buffers.payload[0] = (byte) params.getAddressHeader();
+                    System.arraycopy(hash, offset, buffers.payload, 1, Hash160.HASH_LENGTH);
+                    length = Base58Codec.encodeChecked(buffers.payload, 1 + Hash160.HASH_LENGTH, buffers.sha256, chars, 0, buffers.limbs);
+                } else {
+                    length = Bech32Codec.encodeSegwit(params.getSegwitAddressHrp(), 0, hash, offset, Hash160.HASH_LENGTH, buffers.values, chars, 0);
+                }
+                break;
+            default:
+                throw new CryptoJException("Unsupported network");
+        }
+        if (length < 0) {
+            throw new CryptoJException("Address encoding has failed.");
+        }
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Mixed-case checksum of Ethereum address - a hex letter is upper case if the corresponding nibble of
+     * Keccak-256 of the lower case address is 8 or more.<br>
+     * Ref: EIP 55 - https://eips.ethereum.org/EIPS/eip-55
+     */
+    private static void applyChecksumCase(
+            char[] chars,
+            int length,
+            Buffers buffers
+    ) {
+        byte[] ascii = buffers.payload;
+        for (int i = 2; i < length; i++) {
+            ascii[i - 2] = (byte) chars[i];
+        }
+        buffers.keccak.update(ascii, 0, length - 2);
+        buffers.keccak.doFinal(buffers.digest, 0);
+        for (int i = 2; i < length; i++) {
+            int nibble = (buffers.digest[(i - 2) >>> 1] >>> (((i - 2) & 1) == 0 ? 4 : 0)) & 15;
+            if (nibble >= 8 && chars[i] >= 'a') {
+                chars[i] -= 'a' - 'A';
+            }
+        }
+    }
+
+    /**
+     * Compute I = HMAC-SHA512(chain code, serP(parent public key) || ser32(index)) of a non-hardened child.
+     *
+     * @param chainCodeMac    HMAC-SHA512 keyed by the parent chain code
+     * @param parentPubKey    33 bytes long compressed parent public key
+     * @param derivationIndex derivation index of the child
+     * @param data            working buffer, at least 37 bytes
+     * @param out             buffer to write the 64 bytes long I to
+     * @param scratch         working memory of the HMAC, at least 88 longs
+     */
+    static void childMac(
+            HmacSha512 chainCodeMac,
+            byte[] parentPubKey,
+            int derivationIndex,
+            byte[] data,
+            byte[] out,
+            long[] scratch
+    ) {
+        System.arraycopy(parentPubKey, 0, data, 0, 33);
+        data[33] = (byte) (derivationIndex >>> 24);
+        data[34] = (byte) (derivationIndex >>> 16);
+        data[35] = (byte) (derivationIndex >>> 8);
+        data[36] = (byte) derivationIndex;
+        chainCodeMac.mac(data, 0, 37, out, 0, scratch);
+    }
+
+    /**
+     * Validate contiguous range of non-hardened derivation indexes.
+     *
+     * @param fromIndex first derivation index
+     * @param count     number of derivation indexes
+     * @throws CryptoJException if derivation index range is invalid
+     */
+    public static void checkDerivationRange(
+            int fromIndex,
+            int count
+    ) throws CryptoJException {
+        if (fromIndex < 0) {
+            throw new CryptoJException("Invalid derivation index (must be greater or equal to zero).");
+        }
+        if (count < 0) {
+            throw new CryptoJException("Invalid count (must be greater or equal to zero).");
+        }
+        if ((long) fromIndex + count - 1 > Integer.MAX_VALUE) { // hardened indexes are not reachable from xPub
+            throw new CryptoJException("Invalid derivation index range (last index must be less than 2^31).");
+        }
+    }
+
+    /**
+     * Working memory of derivation calls - digests and buffers are created once per thread, as a call never
+     * calls another one while using them.
+     */
+    @FieldDefaults(level = PRIVATE, makeFinal = true)
+    private static class Buffers {
+
+        byte[] data = new byte[37];
+        byte[] mac = new byte[HmacSha512.MAC_LENGTH];
+        long[] scratch = new long[88];
+
+        char[] chars = new char[Bech32Codec.MAX_LENGTH];
+        byte[] payload = new byte[1 + 20 + 32]; // version, hash and room for the checksum computation
+        byte[] values = new byte[1 + 52]; // witness version and 5-bit groups of up to 32 bytes long program
+        int[] limbs = new int[Base58Codec.limbsLength(1 + 20 + 4)];
+        MessageDigest sha256 = Sha256Hash.newDigest();
+        KeccakDigest keccak = new KeccakDigest(256);
+        byte[] digest = new byte[32];
+        Hash160 hash160 = new Hash160();
+        byte[] hash = new byte[Hash160.HASH_LENGTH];
+        byte[][] pubKeys = new byte[NORMALIZATION_BATCH_SIZE][];
+        byte[] hashes = new byte[NORMALIZATION_BATCH_SIZE * Hash160.HASH_LENGTH];
+
+    }
+
+}
@@ -0,0 +1,141 @@
+package cryptoj.demos;
+
+import cryptoj.CryptoJ;
+import cryptoj.classes.XPubHandle;
+import cryptoj.engines.ParallelAddressDeriver;
+import cryptoj.enums.AddressType;
+import cryptoj.enums.Network;
+import cryptoj.exceptions.CryptoJException;
+import cryptoj.tools.Hash160;
+import cryptoj.tools.HmacSha512;
+import org.bitcoinj.core.Utils;
+import org.bitcoinj.crypto.DeterministicKey;
+import org.bitcoinj.crypto.HDUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measure throughput of parallel address derivation from 1 thread up to all available cores,
+ * and the cost of child key HMAC-SHA512 with and without the chain code midstate cached, and of hash160
+ * with and without reused digests and in lane-parallel batches (run with --add-modules jdk.incubator.vector)
+ */
+public class Demo_5_AddressDerivationThroughput {
+
+    public static void main(String[] args) throws CryptoJException {
+        Network network = Network.BITCOIN_MAINNET;
+        AddressType addressType = AddressType.P2WPKH_NATIVE_SEGWIT;
+        String mnemonic = CryptoJ.generateMnemonic(12);
+        String xPub = CryptoJ.generateXPub(network, addressType, mnemonic);
+        XPubHandle handle = CryptoJ.parseXPub(network, addressType, xPub);
+        int count = 100_000;
+
+        new ParallelAddressDeriver(handle).generateAddresses(0, count); // warm-up
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            measureParallel(handle, threads, count);
+        }
+        if (Integer.bitCount(cores) != 1) { // the doubling has skipped all cores
+            measureParallel(handle, cores, count);
+        }
+
+        measureChildMac(handle.getKey(), 1_000_000);
+        measureHash160(handle.getKey(), 1_000_000);
+    }
+
+    private static void measureParallel(XPubHandle handle, int threads, int count) throws CryptoJException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ParallelAddressDeriver deriver = new ParallelAddressDeriver(handle, pool, ParallelAddressDeriver.DEFAULT_CHUNK_SIZE);
+        long start = System.nanoTime();
+        deriver.generateAddresses(0, count);
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+        System.out.println("threads = " + threads + " ; addresses/s = " + (count * 1_000_000_000L / elapsed));
+    }
+
+    private static void measureChildMac(DeterministicKey parent, int count) {
+        byte[] chainCode = parent.getChainCode();
+        byte[] data = Arrays.copyOf(parent.getPubKey(), 37);
+        HmacSha512 chainCodeMac = new HmacSha512(chainCode);
+        byte[] mac = new byte[HmacSha512.MAC_LENGTH];
+        long[] scratch = new long[88];
+
+        for (int round = 0; round < 3; round++) { // first rounds are warm-up
+            int checksum = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                setIndex(data, i);
+                checksum += HDUtils.hmacSha512(chainCode, data)[0];
+            }
+            long keyedPerCall = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                setIndex(data, i);
+                chainCodeMac.mac(data, 0, data.length, mac, 0, scratch);
+                checksum -= mac[0];
+            }
+            long midstate = System.nanoTime() - start;
+
+            System.out.println("child HMAC of " + count + " indexes ; keyed per call ms = " + keyedPerCall / 1_000_000
+                    + " ; cached midstate ms = " + midstate / 1_000_000 + (checksum == 0 ? "" : " ; MISMATCH"));
+        }
+    }
+
+    private static void measureHash160(DeterministicKey parent, int count) {
+        byte[] pubKey = parent.getPubKey();
+        Hash160 hash160 = new Hash160();
+        byte[] hash = new byte[Hash160.HASH_LENGTH];
+        byte[][] batch = new byte[64][]; // count must be a multiple of the batch size
+        for (int j = 0; j < batch.length; j++) {
+            batch[j] = pubKey.clone();
+        }
+        byte[] hashes = new byte[batch.length * Hash160.HASH_LENGTH];
+
+        for (int round = 0; round < 3; round++) { // first rounds are warm-up
+            int checksum = 0;
+            int batchChecksum = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                pubKey[32] = (byte) i;
+                byte first = Utils.sha256hash160(pubKey)[0];
+                checksum += first;
+                batchChecksum += first;
+            }
+            long newDigests = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                pubKey[32] = (byte) i;
+                hash160.hash160(pubKey, 0, pubKey.length, hash, 0);
+                checksum -= hash[0];
+            }
+            long reused = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < count; i += batch.length) {
+                for (int j = 0; j < batch.length; j++) {
+                    batch[j][32] = (byte) (i + j);
+                }
+                hash160.hash160(batch, hashes);
+                for (int j = 0; j < batch.length; j++) {
+                    batchChecksum -= hashes[j * Hash160.HASH_LENGTH];
+                }
+            }
+            long batched = System.nanoTime() - start;
+
+            System.out.println("hash160 of " + count + " keys ; new digests per call ms = " + newDigests / 1_000_000
+                    + " ; reused digests ms = " + reused / 1_000_000 + " ; batches of " + batch.length + " on "
+                    + Hash160.lanes() + " lanes ms = " + batched / 1_000_000 + (checksum == 0 && batchChecksum == 0 ? "" : " ; MISMATCH"));
+        }
+    }
+
+    private static void setIndex(byte[] data, int derivationIndex) {
+        data[33] = (byte) (derivationIndex >>> 24);
+        data[34] = (byte) (derivationIndex >>> 16);
+        data[35] = (byte) (derivationIndex >>> 8);
+        data[36] = (byte) derivationIndex;
+    }
+
+}
@@ -0,0 +1,63 @@
+package cryptoj.demos;
+
+import cryptoj.CryptoJ;
+import cryptoj.tools.EntropySource;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measure throughput of the entropy source from 1 thread up to all available cores, compared with a new
+ * SecureRandom per request (as mnemonics and ephemeral keys were generated before)
+ */
+public class Demo_6_EntropyThroughput {
+
+    private static final int REQUEST_LENGTH = 32; // one private key or 24 words mnemonic
+
+    public static void main(String[] args) throws InterruptedException {
+        EntropySource source = CryptoJ.getEntropySource();
+        int requests = 200_000;
+
+        measure(1, requests, () -> source.nextBytes(new byte[REQUEST_LENGTH])); // warm-up
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            compare(source, threads, requests);
+        }
+        if (Integer.bitCount(cores) != 1) { // the doubling has skipped all cores
+            compare(source, cores, requests);
+        }
+    }
+
+    private static void compare(EntropySource source, int threads, int requests) throws InterruptedException {
+        long shared = measure(threads, requests, () -> source.nextBytes(new byte[REQUEST_LENGTH]));
+        long perCall = measure(threads, requests / 10, () -> new SecureRandom().nextBytes(new byte[REQUEST_LENGTH]));
+        System.out.println("threads = " + threads + " ; entropy source requests/s = " + shared
+                + " ; new SecureRandom per request requests/s = " + perCall);
+    }
+
+    /**
+     * @return requests per second of all threads together
+     */
+    private static long measure(int threads, int requestsPerThread, Runnable request) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Thread(() -> {
+                for (int i = 0; i < requestsPerThread; i++) {
+                    request.run();
+                }
+            }));
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        return (long) threads * requestsPerThread * 1_000_000_000L / elapsed;
+    }
+
+}
@@ -0,0 +1,50 @@
+package cryptoj.demos;
+
+import cryptoj.CryptoJ;
+import cryptoj.classes.KeyPairMismatch;
+import cryptoj.engines.KeyPairAuditor;
+import cryptoj.enums.AddressType;
+import cryptoj.enums.Network;
+import cryptoj.exceptions.CryptoJException;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Audit that private keys of a wallet match its addresses, compared with signing and verifying a message per index
+ * (as in Demo_4_GenerateAllCombinations)
+ */
+public class Demo_7_KeyPairAudit {
+
+    public static void main(String[] args) throws CryptoJException {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+        Network network = Network.BITCOIN_MAINNET;
+        AddressType addrType = AddressType.P2WPKH_NATIVE_SEGWIT;
+        Set<Network> networks = EnumSet.of(network);
+        Set<AddressType> addrTypes = EnumSet.of(addrType);
+        int count = 2000;
+
+        KeyPairAuditor auditor = new KeyPairAuditor();
+        auditor.audit(mnemonic, "", networks, addrTypes, 0, count); // warm-up
+
+        long start = System.nanoTime();
+        List<KeyPairMismatch> mismatches = auditor.audit(mnemonic, "", networks, addrTypes, 0, count);
+        long auditMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("audit: indexes = " + count + " ; mismatches = " + mismatches.size() + " ; ms = " + auditMillis);
+
+        String xPub = CryptoJ.generateXPub(network, addrType, mnemonic);
+        start = System.nanoTime();
+        for (int derivationIndex = 0; derivationIndex < count / 10; derivationIndex++) {
+            String address = CryptoJ.generateAddress(network, addrType, xPub, derivationIndex);
+            String privateKey = CryptoJ.generatePrivateKey(network, addrType, mnemonic, derivationIndex);
+            String signature = CryptoJ.signMessage(network, "message", privateKey);
+            if (CryptoJ.verifyMessage(network, "message", signature, address) == false) {
+                throw new CryptoJException("Signature verification has failed.");
+            }
+        }
+        long signMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("sign and verify: indexes = " + count / 10 + " ; ms = " + signMillis);
+    }
+
+}
@@ -0,0 +1,149 @@
+package cryptoj.engines;
+
+import cryptoj.classes.DerivedAddress;
+import cryptoj.classes.XPubHandle;
+import cryptoj.exceptions.CryptoJException;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Lazy spliterator of addresses derived from xPub over a range of derivation indexes.<br>
+ * <br>
+ * Addresses are derived only as the consumer pulls them. They are derived in small batches, so the points
+ * can be normalized together; the batch starts at one address and doubles up to {@link #MAX_BATCH_SIZE},
+ * so a consumer which stops early wastes almost no derivation. Splitting halves the remaining index range,
+ * which lets a parallel stream derive the parts independently, still in the encounter order of indexes.<br>
+ * <br>
+ * Derivation failures (invalid child key, probability lower than 1 in 2^127) are thrown as
+ * {@link IllegalStateException} with the {@link CryptoJException} as cause.
+ */
+@FieldDefaults(level = PRIVATE)
+public class DerivedAddressSpliterator implements Spliterator<DerivedAddress> {
+
+    public static final int MAX_BATCH_SIZE = 64;
+
+    /**
+     * Exclusive upper bound of non-hardened derivation indexes.
+     */
+    public static final long INDEX_LIMIT = 1L << 31;
+
+    final XPubHandle handle;
+    long nextIndex;
+    final long endIndex;
+
+    DerivedAddress[] batch;
+    int batchPosition;
+    int batchSize;
+
+    /**
+     * Spliterator of all derivation indexes from the start index up to the last non-hardened one.
+     *
+     * @param handle     parsed xPub to derive the addresses from
+     * @param startIndex first derivation index
+     */
+    public DerivedAddressSpliterator(
+            @NonNull XPubHandle handle,
+            int startIndex
+    ) {
+        this(handle, startIndex, INDEX_LIMIT);
+    }
+
+    /**
+     * Spliterator of a range of derivation indexes.
+     *
+     * @param handle     parsed xPub to derive the addresses from
+     * @param startIndex first derivation index (inclusive)
+     * @param endIndex   last derivation index (exclusive), at most {@link #INDEX_LIMIT}
+     */
+    public DerivedAddressSpliterator(
+            @NonNull XPubHandle handle,
+            long startIndex,
+            long endIndex
+    ) {
+        if (startIndex < 0 || startIndex > endIndex || endIndex > INDEX_LIMIT) {
+            throw new IllegalArgumentException("Invalid derivation index range.");
+        }
+        this.handle = handle;
+        this.nextIndex = startIndex;
+        this.endIndex = endIndex;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super DerivedAddress> action) {
+        if (batchPosition == batchSize) {
+            if (nextIndex >= endIndex) {
+                return false;
+            }
+            fillBatch(batch == null ? 1 : Math.min(batch.length * 2, MAX_BATCH_SIZE));
+        }
+        DerivedAddress derivedAddress = batch[batchPosition];
+        batch[batchPosition++] = null;
+        action.accept(derivedAddress);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super DerivedAddress> action) {
+        while (batchPosition < batchSize) {
+            DerivedAddress derivedAddress = batch[batchPosition];
+            batch[batchPosition++] = null;
+            action.accept(derivedAddress);
+        }
+        while (nextIndex < endIndex) {
+            fillBatch(MAX_BATCH_SIZE);
+            for (int i = 0; i < batchSize; i++) {
+                action.accept(batch[i]);
+                batch[i] = null;
+            }
+            batchPosition = batchSize;
+        }
+    }
+
+    @Override
+    public Spliterator<DerivedAddress> trySplit() {
+        // already derived addresses stay with this spliterator, so only the not yet derived range is split
+        if (batchPosition < batchSize) {
+            return null;
+        }
+        long remaining = endIndex - nextIndex;
+        if (remaining < 2 * MAX_BATCH_SIZE) {
+            return null;
+        }
+        long splitIndex = nextIndex + remaining / 2;
+        DerivedAddressSpliterator prefix = new DerivedAddressSpliterator(handle, nextIndex, splitIndex);
+        nextIndex = splitIndex;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return endIndex - nextIndex + (batchSize - batchPosition);
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | NONNULL | IMMUTABLE | SIZED | SUBSIZED;
+    }
+
+    private void fillBatch(int size) {
+        size = (int) Math.min(size, endIndex - nextIndex);
+        if (batch == null || batch.length < size) {
+            batch = new DerivedAddress[size];
+        }
+        try {
+            handle.generateDerivedAddresses((int) nextIndex, size, batch, 0);
+        } catch (CryptoJException ex) {
+            throw new IllegalStateException(ex.getMessage(), ex);
+        }
+        nextIndex += size;
+        batchSize = size;
+        batchPosition = 0;
+    }
+
+}
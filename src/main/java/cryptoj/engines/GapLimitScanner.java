@@ -0,0 +1,231 @@
+package cryptoj.engines;
+
+import cryptoj.classes.DerivedAddress;
+import cryptoj.classes.PrivateKeyContext;
+import cryptoj.classes.XPubHandle;
+import cryptoj.enums.AddressType;
+import cryptoj.enums.Network;
+import cryptoj.exceptions.CryptoJException;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+import org.bitcoinj.crypto.DeterministicKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Discovery of used accounts and addresses of a wallet (BIP 44 account discovery with gap limit).<br>
+ * <br>
+ * For every combination of network and address type, accounts are scanned from 0. Addresses of an account are
+ * derived in batches and handed to the {@link UsageOracle}; the scan of the account stops after gap limit
+ * consecutive unused addresses, and the discovery stops at the first account without any used address.
+ * Batches are pipelined - the next batch is derived on the executor while the oracle checks the current one.<br>
+ * Ref: BIP 44 - https://github.com/bitcoin/bips/blob/master/bip-0044.mediawiki#account-discovery
+ */
+@Getter
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class GapLimitScanner {
+
+    public static final int DEFAULT_GAP_LIMIT = 20;
+    public static final int DEFAULT_BATCH_SIZE = 20;
+    public static final int DEFAULT_MAX_ACCOUNTS = 100;
+
+    UsageOracle oracle;
+    int gapLimit;
+    int batchSize;
+    int maxAccounts;
+    Executor executor;
+
+    /**
+     * Scanner with the default gap limit (20), batch size and max accounts, deriving on the common fork-join pool.
+     *
+     * @param oracle source of address usage
+     */
+    public GapLimitScanner(
+            @NonNull UsageOracle oracle
+    ) {
+        this(oracle, DEFAULT_GAP_LIMIT, DEFAULT_BATCH_SIZE, DEFAULT_MAX_ACCOUNTS, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Scanner with custom settings.
+     *
+     * @param oracle      source of address usage
+     * @param gapLimit    number of consecutive unused addresses which ends the scan of an account
+     * @param batchSize   number of addresses handed to the oracle at once
+     * @param maxAccounts max number of accounts scanned per network and address type
+     * @param executor    executor to derive the next batch on
+     */
+    public GapLimitScanner(
+            @NonNull UsageOracle oracle,
+            int gapLimit,
+            int batchSize,
+            int maxAccounts,
+            @NonNull Executor executor
+    ) {
+        if (gapLimit < 1) {
+            throw new IllegalArgumentException("Gap limit must be at least 1.");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+        if (maxAccounts < 1) {
+            throw new IllegalArgumentException("Max accounts must be at least 1.");
+        }
+        this.oracle = oracle;
+        this.gapLimit = gapLimit;
+        this.batchSize = batchSize;
+        this.maxAccounts = maxAccounts;
+        this.executor = executor;
+    }
+
+    /**
+     * Discover used accounts of a wallet.
+     *
+     * @param mnemonic   mnemonic
+     * @param passphrase which was used when mnemonic was generated
+     * @param networks   networks to scan
+     * @param addrTypes  address types to scan
+     * @return used accounts, ordered by network, address type and account
+     * @throws CryptoJException if mnemonic is invalid, some address type does not support HD wallet or the oracle has failed
+     */
+    public List<AccountUsage> scan(
+            @NonNull String mnemonic,
+            String passphrase,
+            @NonNull Set<Network> networks,
+            @NonNull Set<AddressType> addrTypes
+    ) throws CryptoJException {
+        DeterministicKey masterKey = PrivateKeyContext.createMasterKey(mnemonic, passphrase);
+
+        List<AccountUsage> accounts = new ArrayList<>();
+        for (Network network : networks) {
+            for (AddressType addrType : addrTypes) {
+                for (int account = 0; account < maxAccounts; account++) {
+                    PrivateKeyContext context = new PrivateKeyContext(network, addrType, masterKey, account);
+                    AccountUsage usage = scanAccount(new XPubHandle(network, addrType, context.xPub()), account);
+                    if (usage.usedIndexes.length == 0) {
+                        break;
+                    }
+                    accounts.add(usage);
+                }
+            }
+        }
+        return accounts;
+    }
+
+    /**
+     * Scan addresses of one account (xPub) until gap limit consecutive unused addresses.
+     *
+     * @param handle  parsed xPub of the account
+     * @param account account index reported in the result
+     * @return usage of the account
+     * @throws CryptoJException if the oracle has failed
+     */
+    public AccountUsage scanAccount(
+            @NonNull XPubHandle handle,
+            int account
+    ) throws CryptoJException {
+        int[] used = new int[16];
+        int usedCount = 0;
+        int gap = 0;
+        long fromIndex = 0;
+
+        CompletableFuture<DerivedAddress[]> next = deriveAsync(handle, fromIndex);
+        while (next != null) {
+            DerivedAddress[] batch = await(next);
+            fromIndex += batch.length;
+            next = fromIndex < DerivedAddressSpliterator.INDEX_LIMIT ? deriveAsync(handle, fromIndex) : null;
+
+            boolean[] flags;
+            try {
+                flags = oracle.areUsed(handle.getNetwork(), handle.getAddrType(), batch);
+                if (flags == null || flags.length != batch.length) {
+                    throw new CryptoJException("Usage oracle has returned invalid number of flags.");
+                }
+            } catch (CryptoJException | RuntimeException ex) {
+                if (next != null) {
+                    next.cancel(true); // the scan has failed, the speculative batch is not needed
+                }
+                throw ex;
+            }
+            for (int i = 0; i < batch.length; i++) {
+                if (flags[i]) {
+                    if (usedCount == used.length) {
+                        used = Arrays.copyOf(used, usedCount * 2);
+                    }
+                    used[usedCount++] = batch[i].getDerivationIndex();
+                    gap = 0;
+                } else if (++gap >= gapLimit) {
+                    if (next != null) {
+                        next.cancel(false); // speculative batch is not needed
+                    }
+                    next = null;
+                    break;
+                }
+            }
+        }
+
+        int[] usedIndexes = Arrays.copyOf(used, usedCount);
+        int nextIndex = usedCount == 0 ? 0 : usedIndexes[usedCount - 1] + 1;
+        return new AccountUsage(handle.getNetwork(), handle.getAddrType(), account, handle.getXPub(), usedIndexes, nextIndex);
+    }
+
+    private CompletableFuture<DerivedAddress[]> deriveAsync(XPubHandle handle, long fromIndex) {
+        int size = (int) Math.min(batchSize, DerivedAddressSpliterator.INDEX_LIMIT - fromIndex);
+        return CompletableFuture.supplyAsync(() -> {
+            DerivedAddress[] batch = new DerivedAddress[size];
+            try {
+                handle.generateDerivedAddresses((int) fromIndex, size, batch, 0);
+            } catch (CryptoJException ex) {
+                throw new CompletionException(ex);
+            }
+            return batch;
+        }, executor);
+    }
+
+    private static DerivedAddress[] await(CompletableFuture<DerivedAddress[]> future) throws CryptoJException {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof CryptoJException) {
+                throw (CryptoJException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Result of the scan of one account.
+     */
+    @Getter
+    @FieldDefaults(level = PRIVATE, makeFinal = true)
+    public static class AccountUsage {
+
+        Network network;
+        AddressType addrType;
+        int account;
+        String xPub;
+        int[] usedIndexes;
+        int nextIndex;
+
+        AccountUsage(Network network, AddressType addrType, int account, String xPub, int[] usedIndexes, int nextIndex) {
+            this.network = network;
+            this.addrType = addrType;
+            this.account = account;
+            this.xPub = xPub;
+            this.usedIndexes = usedIndexes;
+            this.nextIndex = nextIndex;
+        }
+
+    }
+
+}
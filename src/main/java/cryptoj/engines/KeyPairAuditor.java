@@ -0,0 +1,212 @@
+package cryptoj.engines;
+
+import cryptoj.classes.DerivedAddress;
+import cryptoj.classes.KeyPairMismatch;
+import cryptoj.classes.PrivateKeyContext;
+import cryptoj.classes.XPubHandle;
+import cryptoj.enums.AddressType;
+import cryptoj.enums.Network;
+import cryptoj.exceptions.CryptoJException;
+import cryptoj.tools.Hash160;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+import org.bitcoinj.crypto.DeterministicKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Parallel audit that the private keys of a wallet match its addresses.<br>
+ * <br>
+ * For every combination of network and address type, the hashes the addresses encode are derived twice - from the
+ * private keys (CKDpriv, k_i * G) by {@link PrivateKeyContext} and from the xPub (CKDpub) by {@link XPubHandle} -
+ * and compared byte by byte. Nothing is signed, so an index costs two child derivations and two hashes instead of
+ * an ECDSA signature and a public key recovery. The index range is split into chunks, and both sides of a chunk
+ * are derived as separate tasks on a {@link ForkJoinPool}.
+ */
+@Getter
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class KeyPairAuditor {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    private static final Comparator<KeyPairMismatch> ORDER = Comparator
+            .comparing(KeyPairMismatch::getNetwork)
+            .thenComparing(KeyPairMismatch::getAddrType)
+            .thenComparingInt(KeyPairMismatch::getDerivationIndex);
+
+    ForkJoinPool pool;
+    int chunkSize;
+
+    /**
+     * Audit on the common fork-join pool.
+     */
+    public KeyPairAuditor() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Audit on a caller-supplied fork-join pool.
+     *
+     * @param pool      pool to run the audit on, its parallelism decides the number of threads
+     * @param chunkSize number of derivation indexes audited by one task
+     */
+    public KeyPairAuditor(
+            @NonNull ForkJoinPool pool,
+            int chunkSize
+    ) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1.");
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Audit the key pairs of a wallet.
+     *
+     * @param mnemonic   mnemonic
+     * @param passphrase which was used when mnemonic was generated
+     * @param networks   networks to audit
+     * @param addrTypes  address types to audit
+     * @param fromIndex  first derivation index
+     * @param count      number of derivation indexes
+     * @return mismatching key pairs ordered by network, address type and derivation index, empty if all match
+     * @throws CryptoJException if method params are invalid or a derivation has failed
+     */
+    public List<KeyPairMismatch> audit(
+            @NonNull String mnemonic,
+            String passphrase,
+            @NonNull Set<Network> networks,
+            @NonNull Set<AddressType> addrTypes,
+            int fromIndex,
+            int count
+    ) throws CryptoJException {
+        XPubHandle.checkDerivationRange(fromIndex, count);
+        DeterministicKey masterKey = PrivateKeyContext.createMasterKey(mnemonic, passphrase);
+
+        List<AuditTask> tasks = new ArrayList<>();
+        Collection<KeyPairMismatch> mismatches = new ConcurrentLinkedQueue<>();
+        for (Network network : networks) {
+            for (AddressType addrType : addrTypes) {
+                PrivateKeyContext context = new PrivateKeyContext(network, addrType, masterKey);
+                XPubHandle handle = new XPubHandle(network, addrType, context.xPub());
+                tasks.add(new AuditTask(context, handle, fromIndex, count, mismatches));
+            }
+        }
+
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } catch (AuditFailure ex) {
+            throw ex.getCause();
+        }
+
+        List<KeyPairMismatch> result = new ArrayList<>(mismatches);
+        result.sort(ORDER);
+        return result;
+    }
+
+    @FieldDefaults(level = PRIVATE, makeFinal = true)
+    private class AuditTask extends RecursiveAction {
+
+        PrivateKeyContext context;
+        XPubHandle handle;
+        int fromIndex;
+        int count;
+        Collection<KeyPairMismatch> mismatches;
+
+        AuditTask(PrivateKeyContext context, XPubHandle handle, int fromIndex, int count, Collection<KeyPairMismatch> mismatches) {
+            this.context = context;
+            this.handle = handle;
+            this.fromIndex = fromIndex;
+            this.count = count;
+            this.mismatches = mismatches;
+        }
+
+        @Override
+        protected void compute() {
+            if (count > chunkSize) {
+                int half = count / 2;
+                invokeAll(
+                        new AuditTask(context, handle, fromIndex, half, mismatches),
+                        new AuditTask(context, handle, fromIndex + half, count - half, mismatches)
+                );
+                return;
+            }
+
+            byte[] privateHashes = new byte[count * Hash160.HASH_LENGTH];
+            DerivedAddress[] addresses = new DerivedAddress[count];
+            invokeAll(
+                    new SideTask(() -> context.generatePublicKeyHashes(fromIndex, count, privateHashes, 0)),
+                    new SideTask(() -> handle.generateDerivedAddresses(fromIndex, count, addresses, 0))
+            );
+
+            for (int i = 0; i < count; i++) {
+                int from = i * Hash160.HASH_LENGTH;
+                int to = from + Hash160.HASH_LENGTH;
+                byte[] addressHash = addresses[i].getScriptHash();
+                if (Arrays.equals(privateHashes, from, to, addressHash, 0, addressHash.length) == false) {
+                    mismatches.add(new KeyPairMismatch(context.getNetwork(), context.getAddrType(), fromIndex + i,
+                            addresses[i].getAddress(), Arrays.copyOfRange(privateHashes, from, to), addressHash));
+                }
+            }
+        }
+
+    }
+
+    @FunctionalInterface
+    private interface Derivation {
+
+        void run() throws CryptoJException;
+
+    }
+
+    @FieldDefaults(level = PRIVATE, makeFinal = true)
+    private static class SideTask extends RecursiveAction {
+
+        Derivation derivation;
+
+        SideTask(Derivation derivation) {
+            this.derivation = derivation;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                derivation.run();
+            } catch (CryptoJException ex) {
+                throw new AuditFailure(ex);
+            }
+        }
+
+    }
+
+    private static class AuditFailure extends RuntimeException {
+
+        AuditFailure(CryptoJException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized CryptoJException getCause() {
+            return (CryptoJException) super.getCause();
+        }
+
+    }
+
+}
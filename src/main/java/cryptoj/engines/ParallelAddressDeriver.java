@@ -0,0 +1,205 @@
+package cryptoj.engines;
+
+import cryptoj.classes.XPubHandle;
+import cryptoj.exceptions.CryptoJException;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Parallel derivation of addresses for large ranges of derivation indexes.<br>
+ * <br>
+ * The index range is split into chunks, which are derived on a {@link ForkJoinPool}. Results are
+ * written either into a pre-sized array or handed to an {@link AddressSink} strictly in index order.
+ */
+@Getter
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class ParallelAddressDeriver {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    XPubHandle handle;
+    ForkJoinPool pool;
+    int chunkSize;
+
+    /**
+     * Receiver of derived addresses.
+     */
+    @FunctionalInterface
+    public interface AddressSink {
+
+        /**
+         * Accept a derived address. Called from a single thread, in ascending derivation index order.
+         *
+         * @param derivationIndex derivation index
+         * @param address         address for receiving coins
+         * @throws CryptoJException to stop the derivation
+         */
+        void accept(int derivationIndex, String address) throws CryptoJException;
+
+    }
+
+    /**
+     * Parallel address derivation on the common fork-join pool.
+     *
+     * @param handle parsed xPub to derive the addresses from
+     */
+    public ParallelAddressDeriver(
+            @NonNull XPubHandle handle
+    ) {
+        this(handle, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Parallel address derivation on a caller-supplied fork-join pool.
+     *
+     * @param handle    parsed xPub to derive the addresses from
+     * @param pool      pool to run the derivation on, its parallelism decides the number of threads
+     * @param chunkSize number of addresses derived by one task
+     */
+    public ParallelAddressDeriver(
+            @NonNull XPubHandle handle,
+            @NonNull ForkJoinPool pool,
+            int chunkSize
+    ) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1.");
+        }
+        this.handle = handle;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Generate blockchain addresses for receiving coins for a contiguous range of derivation indexes.
+     *
+     * @param fromIndex first derivation index
+     * @param count     number of addresses to generate
+     * @return addresses for receiving coins, the address of derivation index fromIndex + i is at position i
+     * @throws CryptoJException if derivation index range is invalid
+     */
+    public String[] generateAddresses(
+            int fromIndex,
+            int count
+    ) throws CryptoJException {
+        XPubHandle.checkDerivationRange(fromIndex, count);
+
+        String[] addresses = new String[count];
+        generateAddresses(fromIndex, count, addresses, 0);
+        return addresses;
+    }
+
+    /**
+     * Generate blockchain addresses for receiving coins for a contiguous range of derivation indexes
+     * into a pre-sized array.
+     *
+     * @param fromIndex first derivation index
+     * @param count     number of addresses to generate
+     * @param target    array to write the addresses to
+     * @param offset    position in the target array where the address of derivation index fromIndex is written
+     * @throws CryptoJException if derivation index range is invalid or does not fit into the target array
+     */
+    public void generateAddresses(
+            int fromIndex,
+            int count,
+            @NonNull String[] target,
+            int offset
+    ) throws CryptoJException {
+        XPubHandle.checkDerivationRange(fromIndex, count);
+        if (offset < 0 || offset > target.length - count) {
+            throw new CryptoJException("Invalid target array offset.");
+        }
+
+        try {
+            pool.invoke(new DeriveTask(fromIndex, count, target, offset));
+        } catch (DerivationFailure ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Generate blockchain addresses for receiving coins for a contiguous range of derivation indexes
+     * and hand them to the sink in index order.<br>
+     * <br>
+     * The range is processed in windows of (chunk size x pool parallelism) addresses, so memory usage
+     * stays bounded regardless of the range size.
+     *
+     * @param fromIndex first derivation index
+     * @param count     number of addresses to generate
+     * @param sink      receiver of the addresses
+     * @throws CryptoJException if derivation index range is invalid or the sink has failed
+     */
+    public void generateAddresses(
+            int fromIndex,
+            int count,
+            @NonNull AddressSink sink
+    ) throws CryptoJException {
+        XPubHandle.checkDerivationRange(fromIndex, count);
+
+        int windowSize = (int) Math.min(count, (long) chunkSize * pool.getParallelism());
+        String[] window = new String[windowSize];
+
+        for (int done = 0; done < count; ) {
+            int size = Math.min(windowSize, count - done);
+            generateAddresses(fromIndex + done, size, window, 0);
+            for (int i = 0; i < size; i++) {
+                sink.accept(fromIndex + done + i, window[i]);
+                window[i] = null;
+            }
+            done += size;
+        }
+    }
+
+    @FieldDefaults(level = PRIVATE, makeFinal = true)
+    private class DeriveTask extends RecursiveAction {
+
+        int fromIndex;
+        int count;
+        String[] target;
+        int offset;
+
+        DeriveTask(int fromIndex, int count, String[] target, int offset) {
+            this.fromIndex = fromIndex;
+            this.count = count;
+            this.target = target;
+            this.offset = offset;
+        }
+
+        @Override
+        protected void compute() {
+            if (count <= chunkSize) {
+                try {
+                    handle.generateAddresses(fromIndex, count, target, offset);
+                } catch (CryptoJException ex) {
+                    throw new DerivationFailure(ex);
+                }
+                return;
+            }
+            int half = count / 2;
+            invokeAll(
+                    new DeriveTask(fromIndex, half, target, offset),
+                    new DeriveTask(fromIndex + half, count - half, target, offset + half)
+            );
+        }
+
+    }
+
+    private static class DerivationFailure extends RuntimeException {
+
+        DerivationFailure(CryptoJException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized CryptoJException getCause() {
+            return (CryptoJException) super.getCause();
+        }
+
+    }
+
+}
@@ -0,0 +1,446 @@
+package cryptoj.engines;
+
+import cryptoj.CryptoJ;
+import cryptoj.classes.PrivateKeyContext;
+import cryptoj.classes.XPubHandle;
+import cryptoj.enums.AddressType;
+import cryptoj.enums.Network;
+import cryptoj.exceptions.CryptoJException;
+import cryptoj.tools.FileTools;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+import org.bitcoinj.crypto.DeterministicKey;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Bulk provisioning of wallets - mnemonic, xPubs of all combinations of networks and address types, and the first
+ * addresses of each xPub - streamed as CSV into a channel.<br>
+ * <br>
+ * Every wallet passes through the {@link Stage}s in order. Stages are connected by bounded queues and each of them
+ * runs on its own threads, so the expensive seed derivation (PBKDF2) of one wallet overlaps with the account and
+ * address derivation of others. The calling thread writes the encoded wallets strictly in wallet order, and the
+ * number of wallets in flight is bounded, so memory usage does not depend on the number of wallets.<br>
+ * <br>
+ * Every checkpoint interval wallets the written output is forced (if the channel is a {@link FileChannel}) and
+ * the number of written wallets and bytes is stored into the checkpoint file. An interrupted job is resumed by
+ * running it again with the same checkpoint file - a seekable output channel is truncated to the checkpointed
+ * length, a non-seekable one must be positioned there by the caller. Wallets written after the last checkpoint
+ * are discarded and replaced by new ones.<br>
+ * <br>
+ * <strong>Note:</strong> the output contains the mnemonics, it must be protected like the private keys.
+ */
+@Getter
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class ProvisioningPipeline {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+
+    private static final int CHECKPOINT_LENGTH = 16;
+
+    /**
+     * Stages of the pipeline, in the order a wallet passes through them.
+     */
+    public enum Stage {
+        ENTROPY,    // random mnemonic
+        SEED,       // seed derivation (PBKDF2) and master key
+        ACCOUNT,    // hardened account derivation and xPubs
+        ADDRESS,    // address derivation
+        ENCODING    // CSV rows
+    }
+
+    int words;
+    String passphrase;
+    Set<Network> networks;
+    Set<AddressType> addrTypes;
+    int addressCount;
+    Map<Stage, Integer> threads;
+    int queueCapacity;
+    int checkpointInterval;
+
+    /**
+     * Pipeline with the {@link #defaultThreads(int) default threads} of available cores, the default queue
+     * capacity and checkpoint interval.
+     *
+     * @param words        number of mnemonic words, 12 - 24, multiple of 3
+     * @param passphrase   passphrase of all the wallets
+     * @param networks     networks to generate xPubs and addresses for
+     * @param addrTypes    address types to generate xPubs and addresses for
+     * @param addressCount number of addresses generated for each xPub, from derivation index 0
+     * @throws CryptoJException if method params are invalid
+     */
+    public ProvisioningPipeline(
+            int words,
+            String passphrase,
+            @NonNull Set<Network> networks,
+            @NonNull Set<AddressType> addrTypes,
+            int addressCount
+    ) throws CryptoJException {
+        this(words, passphrase, networks, addrTypes, addressCount, Collections.emptyMap(), DEFAULT_QUEUE_CAPACITY, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Pipeline with custom settings.
+     *
+     * @param words              number of mnemonic words, 12 - 24, multiple of 3
+     * @param passphrase         passphrase of all the wallets
+     * @param networks           networks to generate xPubs and addresses for
+     * @param addrTypes          address types to generate xPubs and addresses for
+     * @param addressCount       number of addresses generated for each xPub, from derivation index 0
+     * @param threads            number of threads per stage, missing stages get the {@link #defaultThreads(int) defaults}
+     * @param queueCapacity      capacity of the queue in front of each stage
+     * @param checkpointInterval number of written wallets between checkpoints
+     * @throws CryptoJException if method params are invalid
+     */
+    public ProvisioningPipeline(
+            int words,
+            String passphrase,
+            @NonNull Set<Network> networks,
+            @NonNull Set<AddressType> addrTypes,
+            int addressCount,
+            @NonNull Map<Stage, Integer> threads,
+            int queueCapacity,
+            int checkpointInterval
+    ) throws CryptoJException {
+        if (words < 12 || words > 24 || words % 3 > 0) {
+            throw new CryptoJException("Invalid word length: it must be between 12 and 24, and multiple of 3");
+        }
+        if (networks.isEmpty() || addrTypes.isEmpty()) {
+            throw new CryptoJException("At least one network and address type is required.");
+        }
+        if (addrTypes.stream().anyMatch(addrType -> addrType.getPurpose() < 0)) {
+            throw new CryptoJException("P2SH does not support HD wallet");
+        }
+        XPubHandle.checkDerivationRange(0, addressCount);
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1.");
+        }
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be at least 1.");
+        }
+
+        Map<Stage, Integer> stageThreads = new EnumMap<>(Stage.class);
+        Map<Stage, Integer> defaultThreads = defaultThreads(Runtime.getRuntime().availableProcessors());
+        for (Stage stage : Stage.values()) {
+            int count = threads.getOrDefault(stage, defaultThreads.get(stage));
+            if (count < 1) {
+                throw new IllegalArgumentException("Number of threads must be at least 1.");
+            }
+            stageThreads.put(stage, count);
+        }
+
+        this.words = words;
+        this.passphrase = passphrase == null ? "" : passphrase;
+        this.networks = Collections.unmodifiableSet(EnumSet.copyOf(networks));
+        this.addrTypes = Collections.unmodifiableSet(EnumSet.copyOf(addrTypes));
+        this.addressCount = addressCount;
+        this.threads = Collections.unmodifiableMap(stageThreads);
+        this.queueCapacity = queueCapacity;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Default number of threads per stage. The CPU-bound stages share the cores - seed derivation (2048 rounds of
+     * PBKDF2) gets a half, the rest is split between address and account derivation. Entropy and encoding are
+     * cheap and get one thread each, so the pipeline runs at most two threads more than there are cores (and a few
+     * more on machines with less than three cores, where every stage needs its thread).
+     *
+     * @param cores number of available cores
+     * @return number of threads of every stage
+     */
+    public static Map<Stage, Integer> defaultThreads(int cores) {
+        int seed = Math.max(1, cores / 2);
+        int account = Math.max(1, (cores - seed) / 3);
+        int address = Math.max(1, cores - seed - account);
+
+        Map<Stage, Integer> threads = new EnumMap<>(Stage.class);
+        threads.put(Stage.ENTROPY, 1);
+        threads.put(Stage.SEED, seed);
+        threads.put(Stage.ACCOUNT, account);
+        threads.put(Stage.ADDRESS, address);
+        threads.put(Stage.ENCODING, 1);
+        return Collections.unmodifiableMap(threads);
+    }
+
+    /**
+     * Provision wallets and write them into the output, resuming from the checkpoint if it exists.
+     *
+     * @param walletCount    total number of wallets in the output, including the ones written before the checkpoint
+     * @param output         channel to write the CSV to
+     * @param checkpointFile file of the checkpoint, created or replaced on every checkpoint
+     * @return number of wallets written by this run
+     * @throws CryptoJException if the provisioning of a wallet has failed
+     * @throws IOException      if the output or the checkpoint cannot be written
+     */
+    public long run(
+            long walletCount,
+            @NonNull WritableByteChannel output,
+            @NonNull Path checkpointFile
+    ) throws CryptoJException, IOException {
+        long[] checkpoint = readCheckpoint(checkpointFile);
+        long written = checkpoint[0];
+        long bytes = checkpoint[1];
+        if (output instanceof SeekableByteChannel) {
+            SeekableByteChannel seekable = (SeekableByteChannel) output;
+            seekable.truncate(bytes);
+            seekable.position(bytes);
+        }
+        if (written == 0 && bytes == 0) {
+            bytes += write(output, header());
+        }
+        if (written >= walletCount) {
+            return 0;
+        }
+
+        List<BlockingQueue<Wallet>> queues = new ArrayList<>();
+        for (int i = 0; i <= Stage.values().length; i++) {
+            queues.add(new ArrayBlockingQueue<>(queueCapacity));
+        }
+        int totalThreads = threads.values().stream().mapToInt(Integer::intValue).sum();
+        Semaphore inFlight = new Semaphore(queueCapacity * queues.size() + totalThreads);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicLong nextSequence = new AtomicLong(written);
+        long firstSequence = written;
+
+        ExecutorService executor = Executors.newFixedThreadPool(totalThreads);
+        try {
+            for (Stage stage : Stage.values()) {
+                BlockingQueue<Wallet> in = queues.get(stage.ordinal());
+                BlockingQueue<Wallet> out = queues.get(stage.ordinal() + 1);
+                AtomicInteger running = new AtomicInteger(threads.get(stage));
+                for (int t = 0; t < threads.get(stage); t++) {
+                    executor.execute(() -> runStage(stage, in, out, running, inFlight, nextSequence, walletCount, failure));
+                }
+            }
+
+            Map<Long, Wallet> pending = new HashMap<>();
+            BlockingQueue<Wallet> done = queues.get(queues.size() - 1);
+            long next = written;
+            while (next < walletCount) {
+                Wallet wallet = done.poll(100, TimeUnit.MILLISECONDS);
+                if (failure.get() != null) {
+                    break;
+                }
+                if (wallet == null) {
+                    continue;
+                }
+                pending.put(wallet.sequence, wallet);
+                while ((wallet = pending.remove(next)) != null) {
+                    bytes += write(output, wallet.encoded);
+                    inFlight.release();
+                    next++;
+                    if ((next - firstSequence) % checkpointInterval == 0 || next == walletCount) {
+                        writeCheckpoint(output, checkpointFile, next, bytes);
+                    }
+                }
+            }
+            rethrow(failure.get());
+            return next - firstSequence;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Provisioning has been interrupted.");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void runStage(
+            Stage stage,
+            BlockingQueue<Wallet> in,
+            BlockingQueue<Wallet> out,
+            AtomicInteger running,
+            Semaphore inFlight,
+            AtomicLong nextSequence,
+            long walletCount,
+            AtomicReference<Throwable> failure
+    ) {
+        try {
+            while (true) {
+                Wallet wallet;
+                if (stage == Stage.ENTROPY) {
+                    inFlight.acquire();
+                    long sequence = nextSequence.getAndIncrement();
+                    if (sequence >= walletCount) {
+                        inFlight.release();
+                        break;
+                    }
+                    wallet = new Wallet(sequence);
+                } else {
+                    wallet = in.take();
+                    if (wallet == Wallet.END) {
+                        in.put(Wallet.END); // for the other threads of the stage
+                        break;
+                    }
+                }
+                process(stage, wallet);
+                out.put(wallet);
+            }
+            if (running.decrementAndGet() == 0) {
+                out.put(Wallet.END);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable ex) { // errors too, otherwise the writer would wait for the dead stage forever
+            failure.compareAndSet(null, ex);
+        }
+    }
+
+    private void process(Stage stage, Wallet wallet) throws CryptoJException {
+        switch (stage) {
+            case ENTROPY:
+                wallet.mnemonic = CryptoJ.generateMnemonic(words);
+                break;
+            case SEED:
+                wallet.masterKey = PrivateKeyContext.createMasterKey(wallet.mnemonic, passphrase);
+                break;
+            case ACCOUNT:
+                wallet.xPubs = new ArrayList<>();
+                for (Map<AddressType, PrivateKeyContext> contexts : PrivateKeyContext.createAll(wallet.masterKey, networks, addrTypes).values()) {
+                    for (PrivateKeyContext context : contexts.values()) {
+                        wallet.xPubs.add(new XPubHandle(context.getNetwork(), context.getAddrType(), context.xPub()));
+                    }
+                }
+                wallet.masterKey = null;
+                break;
+            case ADDRESS:
+                wallet.addresses = new ArrayList<>();
+                for (XPubHandle handle : wallet.xPubs) {
+                    wallet.addresses.add(handle.generateAddresses(0, addressCount));
+                }
+                break;
+            case ENCODING:
+                StringBuilder csv = new StringBuilder();
+                for (int i = 0; i < wallet.xPubs.size(); i++) {
+                    XPubHandle handle = wallet.xPubs.get(i);
+                    csv.append(wallet.sequence).append(',')
+                            .append(wallet.mnemonic).append(',')
+                            .append(handle.getNetwork().getCode()).append(',')
+                            .append(handle.getAddrType().getCode()).append(',')
+                            .append(handle.getXPub());
+                    for (String address : wallet.addresses.get(i)) {
+                        csv.append(',').append(address);
+                    }
+                    csv.append('\n');
+                }
+                wallet.encoded = csv.toString().getBytes(StandardCharsets.US_ASCII);
+                wallet.mnemonic = null;
+                wallet.xPubs = null;
+                wallet.addresses = null;
+                break;
+            default:
+                throw new CryptoJException("Unsupported stage");
+        }
+    }
+
+    private byte[] header() {
+        StringBuilder csv = new StringBuilder("wallet,mnemonic,network,address_type,xpub");
+        for (int i = 0; i < addressCount; i++) {
+            csv.append(",address_").append(i);
+        }
+        return csv.append('\n').toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static int write(WritableByteChannel output, byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            output.write(buffer);
+        }
+        return data.length;
+    }
+
+    private static long[] readCheckpoint(Path file) throws IOException {
+        if (Files.exists(file) == false) {
+            return new long[]{0, 0};
+        }
+        byte[] data = Files.readAllBytes(file);
+        if (data.length != CHECKPOINT_LENGTH) {
+            throw new IOException("Corrupted checkpoint: " + file);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        return new long[]{buffer.getLong(), buffer.getLong()};
+    }
+
+    /**
+     * Force the output (so the checkpoint never claims bytes which are not durable) and replace the checkpoint
+     * atomically.
+     */
+    private static void writeCheckpoint(WritableByteChannel output, Path file, long wallets, long bytes) throws IOException {
+        if (output instanceof FileChannel) {
+            ((FileChannel) output).force(false);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(channel, ByteBuffer.allocate(CHECKPOINT_LENGTH).putLong(wallets).putLong(bytes).array());
+            channel.force(true);
+        }
+        FileTools.moveDurably(tmp, file);
+    }
+
+    private static void rethrow(Throwable failure) throws CryptoJException, IOException {
+        if (failure == null) {
+            return;
+        }
+        if (failure instanceof CryptoJException) {
+            throw (CryptoJException) failure;
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new IllegalStateException(failure);
+    }
+
+    /**
+     * Wallet passing through the stages, each stage fills in its part and drops what is no longer needed.
+     */
+    @FieldDefaults(level = PRIVATE)
+    private static class Wallet {
+
+        static final Wallet END = new Wallet(-1);
+
+        final long sequence;
+        String mnemonic;
+        DeterministicKey masterKey;
+        List<XPubHandle> xPubs;
+        List<String[]> addresses;
+        byte[] encoded;
+
+        Wallet(long sequence) {
+            this.sequence = sequence;
+        }
+
+    }
+
+}
@@ -0,0 +1,25 @@
+package cryptoj.engines;
+
+import cryptoj.classes.DerivedAddress;
+import cryptoj.enums.AddressType;
+import cryptoj.enums.Network;
+import cryptoj.exceptions.CryptoJException;
+
+/**
+ * Source of truth whether addresses have been used, e.g. backed by a local UTXO or transaction history file.
+ */
+@FunctionalInterface
+public interface UsageOracle {
+
+    /**
+     * Check which addresses of a batch have been used (have any transaction history).
+     *
+     * @param network  network of the addresses
+     * @param addrType address type of the addresses
+     * @param batch    addresses in ascending derivation index order
+     * @return usage flags, the flag of batch[i] is at position i
+     * @throws CryptoJException to stop the scan
+     */
+    boolean[] areUsed(Network network, AddressType addrType, DerivedAddress[] batch) throws CryptoJException;
+
+}
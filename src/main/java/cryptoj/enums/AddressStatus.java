@@ -0,0 +1,40 @@
+package cryptoj.enums;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Result of address validation.
+ */
+@Getter
+@FieldDefaults(level = PRIVATE)
+public enum AddressStatus {
+
+    VALID("VALID", "Valid address"),
+    INVALID_CHARACTER("INVALID_CHARACTER", "Address contains invalid character"),
+    INVALID_LENGTH("INVALID_LENGTH", "Address is too short or too long"),
+    INVALID_CHECKSUM("INVALID_CHECKSUM", "Checksum of address does not match"),
+    INVALID_PREFIX("INVALID_PREFIX", "Address has no human-readable part"),
+    WRONG_NETWORK("WRONG_NETWORK", "Address belongs to another network"),
+    INVALID_WITNESS_VERSION("INVALID_WITNESS_VERSION", "Witness version does not match the encoding"),
+    INVALID_DATA_LENGTH("INVALID_DATA_LENGTH", "Encoded hash or witness program has invalid length");
+
+    final String code;
+    final String name;
+
+    AddressStatus(
+            final @NonNull String code,
+            final @NonNull String name
+    ) {
+        this.code = code;
+        this.name = name;
+    }
+
+    public boolean isValid() {
+        return this == VALID;
+    }
+
+}
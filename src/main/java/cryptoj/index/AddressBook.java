@@ -0,0 +1,657 @@
+package cryptoj.index;
+
+import cryptoj.CryptoJ;
+import cryptoj.classes.DerivedAddress;
+import cryptoj.classes.XPubHandle;
+import cryptoj.enums.AddressType;
+import cryptoj.enums.Network;
+import cryptoj.exceptions.CryptoJException;
+import cryptoj.tools.FileTools;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Persistent address book - sorted binary files of (address hash, xPub id, derivation index, network, address type),
+ * memory-mapped for lookups.<br>
+ * <br>
+ * The book is a directory of immutable segment files. Every segment starts with a 32 bytes long header (magic,
+ * version, record count) followed by 32 bytes long records sorted by the hash:
+ * <pre>
+ *   hash (20 bytes) | xPub id (4) | derivation index (4) | network ordinal (1) | address type ordinal (1) | 0 (2)
+ * </pre>
+ * Growing the book appends a new segment, which is written to a temporary file, forced to disk and then atomically
+ * renamed, so a crash never leaves a partial segment behind. Large appends are sorted externally - runs of 65536
+ * records (2 MB) are sorted on the heap, written to temporary files and merged into the segment, so the heap usage
+ * does not depend on the size of the append. Compaction writes the merged segments first and then
+ * a manifest of them and the replaced segments, which is rolled forward when the book is opened after a crash,
+ * so the replaced segments are never served together with the merged ones.<br>
+ * <br>
+ * Segments are opened by {@link FileChannel#map}, so reopening the book costs only the mapping, nothing is derived
+ * or loaded onto the heap. Lookups use interpolation search, as the hashes are uniformly distributed, with fallback
+ * to binary search.
+ */
+@FieldDefaults(level = PRIVATE)
+public class AddressBook implements Closeable {
+
+    public static final int RECORD_LENGTH = 32;
+    public static final int HEADER_LENGTH = 32;
+
+    private static final int MAGIC = 0x434a4142; // "CJAB"
+    private static final int VERSION = 1;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".cjab";
+    private static final int MAX_SEGMENT_RECORDS = (Integer.MAX_VALUE - HEADER_LENGTH) / RECORD_LENGTH;
+    private static final int RUN_RECORDS = 1 << 16; // 2 MB of records sorted on the heap
+    private static final String RUN_PREFIX = "run-";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final String MANIFEST = "compaction.manifest";
+    private static final int INTERPOLATION_STEPS = 4;
+    private static final int WRITE_BUFFER_RECORDS = 32768;
+    private static final Network[] NETWORKS = Network.values();
+    private static final AddressType[] ADDRESS_TYPES = AddressType.values();
+
+    final Path directory;
+    volatile Segment[] segments;
+    int nextSegmentNumber;
+
+    private AddressBook(Path directory, Segment[] segments, int nextSegmentNumber) {
+        this.directory = directory;
+        this.segments = segments;
+        this.nextSegmentNumber = nextSegmentNumber;
+    }
+
+    /**
+     * Open address book, the directory is created if it does not exist.
+     *
+     * @param directory directory of the segment files
+     * @return opened address book
+     * @throws IOException if some segment file cannot be read or is corrupted
+     */
+    public static AddressBook open(
+            @NonNull Path directory
+    ) throws IOException {
+        Files.createDirectories(directory);
+        rollForward(directory);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + TMP_SUFFIX)) {
+            for (Path tmp : stream) {
+                Files.delete(tmp); // partial segment or run of an interrupted append or compaction
+            }
+        }
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+
+        List<Segment> segments = new ArrayList<>();
+        int nextSegmentNumber = 0;
+        for (Path file : files) {
+            segments.add(Segment.map(file));
+            nextSegmentNumber = Math.max(nextSegmentNumber, segmentNumber(file) + 1);
+        }
+        return new AddressBook(directory, segments.toArray(new Segment[0]), nextSegmentNumber);
+    }
+
+    /**
+     * Derive addresses of a range of derivation indexes and append them to the book as new segments.
+     *
+     * @param xPubId    caller-assigned id of the xPub, stored with every address
+     * @param handle    parsed xPub
+     * @param fromIndex first derivation index
+     * @param count     number of addresses
+     * @throws CryptoJException if derivation index range is invalid
+     * @throws IOException      if the segment cannot be written
+     */
+    public synchronized void append(
+            int xPubId,
+            @NonNull XPubHandle handle,
+            int fromIndex,
+            int count
+    ) throws CryptoJException, IOException {
+        XPubHandle.checkDerivationRange(fromIndex, count);
+
+        DerivedAddress[] chunk = new DerivedAddress[Math.min(count, 4096)];
+        long[] records = new long[Math.min(count, RUN_RECORDS) * 4];
+        for (int done = 0; done < count; ) {
+            int segmentSize = Math.min(MAX_SEGMENT_RECORDS, count - done);
+            if (segmentSize <= RUN_RECORDS) {
+                deriveRecords(xPubId, handle, fromIndex + done, segmentSize, records, chunk);
+                Path file = nextSegmentFile();
+                addSegment(Segment.map(publish(writeRecords(tmpFile(file), records, segmentSize), file)));
+            } else {
+                addSegment(appendSorted(xPubId, handle, fromIndex + done, segmentSize, records, chunk));
+            }
+            done += segmentSize;
+        }
+    }
+
+    /**
+     * External sort - derive sorted runs into temporary files and merge them into a new segment.
+     */
+    private Segment appendSorted(int xPubId, XPubHandle handle, int fromIndex, int count, long[] records,
+                                 DerivedAddress[] chunk) throws CryptoJException, IOException {
+        List<Segment> runs = new ArrayList<>();
+        try {
+            for (int done = 0; done < count; ) {
+                int size = Math.min(RUN_RECORDS, count - done);
+                deriveRecords(xPubId, handle, fromIndex + done, size, records, chunk);
+                Path run = directory.resolve(String.format("%s%06d%s", RUN_PREFIX, runs.size(), TMP_SUFFIX));
+                runs.add(Segment.map(writeRecords(run, records, size)));
+                done += size;
+            }
+
+            Segment[] sources = runs.toArray(new Segment[0]);
+            Path file = nextSegmentFile();
+            Path tmp = tmpFile(file);
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer out = ByteBuffer.allocate(WRITE_BUFFER_RECORDS * RECORD_LENGTH);
+                writeHeader(out, count);
+                mergeRecords(sources, new int[sources.length], count, channel, out);
+                writeFully(channel, out);
+                channel.force(true);
+            }
+            return Segment.map(publish(tmp, file));
+        } finally {
+            for (Segment run : runs) {
+                run.close();
+                Files.deleteIfExists(run.file);
+            }
+        }
+    }
+
+    private static void deriveRecords(int xPubId, XPubHandle handle, int fromIndex, int count, long[] records,
+                                      DerivedAddress[] chunk) throws CryptoJException {
+        for (int filled = 0; filled < count; ) {
+            int size = Math.min(chunk.length, count - filled);
+            handle.generateDerivedAddresses(fromIndex + filled, size, chunk, 0);
+            for (int i = 0; i < size; i++) {
+                packRecord(records, filled + i, chunk[i].getScriptHash(), xPubId, chunk[i].getDerivationIndex(),
+                        handle.getNetwork(), handle.getAddrType());
+                chunk[i] = null;
+            }
+            filled += size;
+        }
+        sortRecords(records, count);
+    }
+
+    /**
+     * Merge all segments into one (or more, if it would exceed the max size of a mapped file), so lookups search
+     * fewer segments. Old segment files are deleted after the merged one is safely written and recorded in the
+     * compaction manifest.
+     *
+     * @throws IOException if the merged segment cannot be written
+     */
+    public synchronized void compact() throws IOException {
+        Segment[] old = segments;
+        if (old.length < 2) {
+            return;
+        }
+
+        long total = 0;
+        for (Segment segment : old) {
+            total += segment.recordCount;
+        }
+        int[] positions = new int[old.length];
+        List<Path> outputs = new ArrayList<>();
+        ByteBuffer out = ByteBuffer.allocate(WRITE_BUFFER_RECORDS * RECORD_LENGTH);
+        while (total > 0) {
+            int segmentSize = (int) Math.min(total, MAX_SEGMENT_RECORDS);
+            Path file = nextSegmentFile();
+            try (FileChannel channel = FileChannel.open(tmpFile(file), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                out.clear();
+                writeHeader(out, segmentSize);
+                mergeRecords(old, positions, segmentSize, channel, out);
+                writeFully(channel, out);
+                channel.force(true);
+            }
+            outputs.add(file);
+            total -= segmentSize;
+        }
+
+        // from now on the compaction is completed even if it crashes, by rollForward(..) when the book is opened
+        List<String> manifest = new ArrayList<>();
+        for (Path file : outputs) {
+            manifest.add("+" + file.getFileName());
+        }
+        for (Segment segment : old) {
+            manifest.add("-" + segment.file.getFileName());
+        }
+        Path manifestTmp = directory.resolve(MANIFEST + TMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(manifestTmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer content = ByteBuffer.wrap(String.join("\n", manifest).getBytes(StandardCharsets.US_ASCII));
+            content.position(content.limit());
+            writeFully(channel, content);
+            channel.force(true);
+        }
+        FileTools.moveDurably(manifestTmp, directory.resolve(MANIFEST));
+
+        List<Segment> merged = new ArrayList<>();
+        for (Path file : outputs) {
+            merged.add(Segment.map(publish(tmpFile(file), file)));
+        }
+        segments = merged.toArray(new Segment[0]);
+        for (Segment segment : old) {
+            segment.close();
+        }
+        rollForward(directory);
+    }
+
+    /**
+     * Complete the compaction recorded in the manifest - publish the merged segments which are still temporary,
+     * delete the replaced segments and finally the manifest.
+     */
+    private static void rollForward(Path directory) throws IOException {
+        Path manifest = directory.resolve(MANIFEST);
+        if (Files.exists(manifest) == false) {
+            return;
+        }
+        List<String> lines = Files.readAllLines(manifest, StandardCharsets.US_ASCII);
+        for (String line : lines) {
+            Path file = directory.resolve(line.substring(1));
+            if (line.startsWith("+") && Files.exists(tmpFile(file))) {
+                publish(tmpFile(file), file);
+            }
+        }
+        for (String line : lines) {
+            if (line.startsWith("-")) {
+                Files.deleteIfExists(directory.resolve(line.substring(1)));
+            }
+        }
+        FileTools.forceDirectory(directory);
+        Files.delete(manifest);
+        FileTools.forceDirectory(directory);
+    }
+
+    /**
+     * Find an address given by the hash it encodes.
+     *
+     * @param hash hash encoded in the address ({@link DerivedAddress#getScriptHash()})
+     * @return entry of the address, or null if the address is not in the book
+     */
+    public Entry find(
+            @NonNull byte[] hash
+    ) {
+        if (hash.length != 20) {
+            return null;
+        }
+        ByteBuffer key = ByteBuffer.wrap(hash);
+        long w0 = key.getLong(0);
+        long w1 = key.getLong(8);
+        int w2 = key.getInt(16);
+
+        for (Segment segment : segments) {
+            int position = segment.search(w0, w1, w2);
+            if (position >= 0) {
+                int offset = HEADER_LENGTH + position * RECORD_LENGTH;
+                ByteBuffer buffer = segment.buffer;
+                return new Entry(
+                        buffer.getInt(offset + 20),
+                        buffer.getInt(offset + 24),
+                        NETWORKS[buffer.get(offset + 28)],
+                        ADDRESS_TYPES[buffer.get(offset + 29)]
+                );
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find an address.
+     *
+     * @param network network of the address
+     * @param address address
+     * @return entry of the address, or null if the address is not in the book
+     * @throws CryptoJException if the address is not valid for the network
+     */
+    public Entry find(
+            @NonNull Network network,
+            @NonNull String address
+    ) throws CryptoJException {
+        return find(CryptoJ.decodeAddressHash(network, address));
+    }
+
+    /**
+     * @return number of addresses in the book
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.recordCount;
+        }
+        return size;
+    }
+
+    /**
+     * @return number of segment files
+     */
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments = new Segment[0];
+    }
+
+    private void addSegment(Segment segment) {
+        Segment[] old = segments;
+        Segment[] grown = new Segment[old.length + 1];
+        System.arraycopy(old, 0, grown, 0, old.length);
+        grown[old.length] = segment;
+        segments = grown;
+    }
+
+    /**
+     * Write sorted records into a new file and force it.
+     */
+    private static Path writeRecords(Path file, long[] records, int count) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(HEADER_LENGTH + count * RECORD_LENGTH);
+        writeHeader(out, count);
+        out.asLongBuffer().put(records, 0, count * 4);
+        out.position(out.limit());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, out);
+            channel.force(true);
+        }
+        return file;
+    }
+
+    private Path nextSegmentFile() {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, nextSegmentNumber++, SEGMENT_SUFFIX));
+    }
+
+    private static Path tmpFile(Path file) {
+        return file.resolveSibling(file.getFileName() + TMP_SUFFIX);
+    }
+
+    /**
+     * Atomically rename the fully written and forced temporary file to the segment file, and force the directory.
+     */
+    private static Path publish(Path tmp, Path file) throws IOException {
+        return FileTools.moveDurably(tmp, file);
+    }
+
+    /**
+     * Write everything put into the buffer so far and clear it.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void writeHeader(ByteBuffer out, int recordCount) {
+        out.putInt(0, MAGIC);
+        out.putInt(4, VERSION);
+        out.putLong(8, recordCount);
+        out.position(HEADER_LENGTH);
+    }
+
+    private static int segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Pack a record into 4 words, big-endian, so the words compare like the bytes of the hash.
+     */
+    private static void packRecord(long[] records, int position, byte[] hash, int xPubId, int derivationIndex,
+                                   Network network, AddressType addrType) {
+        ByteBuffer buffer = ByteBuffer.wrap(hash);
+        int p = position * 4;
+        records[p] = buffer.getLong(0);
+        records[p + 1] = buffer.getLong(8);
+        records[p + 2] = ((long) buffer.getInt(16) << 32) | (xPubId & 0xffffffffL);
+        records[p + 3] = ((long) derivationIndex << 32) | ((long) network.ordinal() << 24) | ((long) addrType.ordinal() << 16);
+    }
+
+    /**
+     * Heapsort of records, 4 words each, by the hash - in place, no allocation.
+     */
+    private static void sortRecords(long[] records, int count) {
+        for (int i = count / 2 - 1; i >= 0; i--) {
+            siftDown(records, i, count);
+        }
+        for (int end = count - 1; end > 0; end--) {
+            swapRecords(records, 0, end);
+            siftDown(records, 0, end);
+        }
+    }
+
+    private static void siftDown(long[] records, int root, int count) {
+        while (true) {
+            int child = 2 * root + 1;
+            if (child >= count) {
+                return;
+            }
+            if (child + 1 < count && compareRecords(records, child + 1, child) > 0) {
+                child++;
+            }
+            if (compareRecords(records, root, child) >= 0) {
+                return;
+            }
+            swapRecords(records, root, child);
+            root = child;
+        }
+    }
+
+    private static int compareRecords(long[] records, int a, int b) {
+        int pa = a * 4;
+        int pb = b * 4;
+        int c = Long.compareUnsigned(records[pa], records[pb]);
+        if (c == 0) {
+            c = Long.compareUnsigned(records[pa + 1], records[pb + 1]);
+        }
+        if (c == 0) {
+            c = Long.compareUnsigned(records[pa + 2] >>> 32, records[pb + 2] >>> 32);
+        }
+        return c;
+    }
+
+    private static void swapRecords(long[] records, int a, int b) {
+        int pa = a * 4;
+        int pb = b * 4;
+        for (int i = 0; i < 4; i++) {
+            long tmp = records[pa + i];
+            records[pa + i] = records[pb + i];
+            records[pb + i] = tmp;
+        }
+    }
+
+    /**
+     * k-way merge of the next count records of the sources into the channel, with a heap of the sources ordered
+     * by their current record.
+     */
+    private static void mergeRecords(Segment[] sources, int[] positions, int count, FileChannel channel,
+                                     ByteBuffer out) throws IOException {
+        int[] heap = new int[sources.length];
+        int size = 0;
+        for (int s = 0; s < sources.length; s++) {
+            if (positions[s] < sources[s].recordCount) {
+                heap[size++] = s;
+            }
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(heap, i, size, sources, positions);
+        }
+        for (int n = 0; n < count; n++) {
+            int min = heap[0];
+            if (out.remaining() < RECORD_LENGTH) {
+                writeFully(channel, out);
+            }
+            int from = HEADER_LENGTH + positions[min]++ * RECORD_LENGTH;
+            out.put(sources[min].buffer.slice(from, RECORD_LENGTH));
+            if (positions[min] == sources[min].recordCount) {
+                heap[0] = heap[--size];
+            }
+            siftDown(heap, 0, size, sources, positions);
+        }
+    }
+
+    private static void siftDown(int[] heap, int root, int size, Segment[] sources, int[] positions) {
+        while (true) {
+            int child = 2 * root + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && compare(sources[heap[child + 1]], positions[heap[child + 1]], sources[heap[child]], positions[heap[child]]) < 0) {
+                child++;
+            }
+            if (compare(sources[heap[root]], positions[heap[root]], sources[heap[child]], positions[heap[child]]) <= 0) {
+                return;
+            }
+            int tmp = heap[root];
+            heap[root] = heap[child];
+            heap[child] = tmp;
+            root = child;
+        }
+    }
+
+    private static int compare(Segment a, int positionA, Segment b, int positionB) {
+        int oa = HEADER_LENGTH + positionA * RECORD_LENGTH;
+        int ob = HEADER_LENGTH + positionB * RECORD_LENGTH;
+        int c = Long.compareUnsigned(a.buffer.getLong(oa), b.buffer.getLong(ob));
+        if (c == 0) {
+            c = Long.compareUnsigned(a.buffer.getLong(oa + 8), b.buffer.getLong(ob + 8));
+        }
+        if (c == 0) {
+            c = Integer.compareUnsigned(a.buffer.getInt(oa + 16), b.buffer.getInt(ob + 16));
+        }
+        return c;
+    }
+
+    /**
+     * Address book entry.
+     */
+    @Getter
+    @FieldDefaults(level = PRIVATE, makeFinal = true)
+    public static class Entry {
+
+        int xPubId;
+        int derivationIndex;
+        Network network;
+        AddressType addrType;
+
+        Entry(int xPubId, int derivationIndex, Network network, AddressType addrType) {
+            this.xPubId = xPubId;
+            this.derivationIndex = derivationIndex;
+            this.network = network;
+            this.addrType = addrType;
+        }
+
+    }
+
+    @FieldDefaults(level = PRIVATE, makeFinal = true)
+    private static class Segment implements Closeable {
+
+        Path file;
+        FileChannel channel;
+        MappedByteBuffer buffer;
+        int recordCount;
+
+        Segment(Path file, FileChannel channel, MappedByteBuffer buffer, int recordCount) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.recordCount = recordCount;
+        }
+
+        static Segment map(Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                long length = channel.size();
+                if (length < HEADER_LENGTH || length > Integer.MAX_VALUE) {
+                    throw new IOException("Invalid address book segment length: " + file);
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                long recordCount = buffer.getLong(8);
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                        || length != HEADER_LENGTH + recordCount * RECORD_LENGTH) {
+                    throw new IOException("Corrupted address book segment: " + file);
+                }
+                return new Segment(file, channel, buffer, (int) recordCount);
+            } catch (IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+        }
+
+        /**
+         * Interpolation search by the first word of the hash, narrowed to binary search after a few steps.
+         *
+         * @return position of the record, or -1 if it is not found
+         */
+        int search(long w0, long w1, int w2) {
+            int lo = 0;
+            int hi = recordCount - 1;
+            for (int step = 0; lo <= hi; step++) {
+                int mid;
+                long loKey = key(lo);
+                long hiKey = key(hi);
+                if (step < INTERPOLATION_STEPS && Long.compareUnsigned(loKey, w0) <= 0 && Long.compareUnsigned(w0, hiKey) <= 0
+                        && loKey != hiKey) {
+                    double fraction = unsigned(w0 - loKey) / unsigned(hiKey - loKey);
+                    mid = lo + (int) Math.min(hi - lo, (long) (fraction * (hi - lo)));
+                } else {
+                    mid = (lo + hi) >>> 1;
+                }
+
+                int offset = HEADER_LENGTH + mid * RECORD_LENGTH;
+                int c = Long.compareUnsigned(buffer.getLong(offset), w0);
+                if (c == 0) {
+                    c = Long.compareUnsigned(buffer.getLong(offset + 8), w1);
+                }
+                if (c == 0) {
+                    c = Integer.compareUnsigned(buffer.getInt(offset + 16), w2);
+                }
+                if (c == 0) {
+                    return mid;
+                }
+                if (c < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return -1;
+        }
+
+        private long key(int position) {
+            return buffer.getLong(HEADER_LENGTH + position * RECORD_LENGTH);
+        }
+
+        private static double unsigned(long value) {
+            double d = (double) (value >>> 1) * 2.0;
+            return d + (value & 1L);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+    }
+
+}
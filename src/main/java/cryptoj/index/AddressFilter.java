@@ -0,0 +1,284 @@
+package cryptoj.index;
+
+import cryptoj.CryptoJ;
+import cryptoj.classes.DerivedAddress;
+import cryptoj.classes.XPubHandle;
+import cryptoj.enums.Network;
+import cryptoj.exceptions.CryptoJException;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static lombok.AccessLevel.NONE;
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Bloom filter of address hashes, a compact probabilistic pre-check in front of {@link AddressIndex}
+ * or {@link AddressBook}.<br>
+ * <br>
+ * A negative answer is exact, a positive one is wrong with the configured false positive rate. Address hashes
+ * are uniformly distributed already, so the bit positions are computed by double hashing straight from the hash
+ * bytes, h1 + i * h2, without hashing them again. About 2.4 bytes per address are needed for the rate of 1e-4.<br>
+ * <br>
+ * Filters with the same size and number of hash functions can be merged, e.g. filters built per xPub. The filter
+ * is not thread-safe for adding; once it is built, it can be queried from any number of threads.
+ */
+@Getter
+@FieldDefaults(level = PRIVATE)
+public class AddressFilter {
+
+    private static final int MAGIC = 0x434a4246; // "CJBF"
+    private static final int VERSION = 1;
+
+    final long expectedEntries;
+    final double falsePositiveRate;
+    final long bitCount;
+    final int hashCount;
+    long entryCount;
+
+    @Getter(NONE)
+    final long[] words;
+
+    /**
+     * Create empty filter sized for the expected number of addresses and false positive rate.
+     *
+     * @param expectedEntries   expected number of addresses
+     * @param falsePositiveRate wanted false positive rate when the expected number of addresses is added
+     */
+    public AddressFilter(
+            long expectedEntries,
+            double falsePositiveRate
+    ) {
+        long bitCount = bitCount(expectedEntries, falsePositiveRate);
+
+        this.expectedEntries = expectedEntries;
+        this.falsePositiveRate = falsePositiveRate;
+        this.bitCount = bitCount;
+        this.hashCount = hashCount(expectedEntries, bitCount);
+        this.words = new long[(int) (bitCount / 64)];
+    }
+
+    private AddressFilter(long expectedEntries, double falsePositiveRate, long bitCount, int hashCount, long entryCount, long[] words) {
+        this.expectedEntries = expectedEntries;
+        this.falsePositiveRate = falsePositiveRate;
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+        this.entryCount = entryCount;
+        this.words = words;
+    }
+
+    /**
+     * Add address given by the hash it encodes.
+     *
+     * @param hash   buffer containing the hash ({@link DerivedAddress#getScriptHash()})
+     * @param offset offset of the hash in the buffer, at least 16 bytes of it are used
+     */
+    public void add(
+            @NonNull byte[] hash,
+            int offset
+    ) {
+        long h1 = readLong(hash, offset);
+        long h2 = readLong(hash, offset + 8) | 1L; // odd, so the positions never collapse into one
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        entryCount++;
+    }
+
+    /**
+     * Add addresses of a range of derivation indexes of xPub.
+     *
+     * @param handle    parsed xPub
+     * @param fromIndex first derivation index
+     * @param count     number of addresses
+     * @throws CryptoJException if derivation index range is invalid
+     */
+    public void addRange(
+            @NonNull XPubHandle handle,
+            int fromIndex,
+            int count
+    ) throws CryptoJException {
+        XPubHandle.checkDerivationRange(fromIndex, count);
+
+        DerivedAddress[] chunk = new DerivedAddress[Math.min(count, 4096)];
+        for (int done = 0; done < count; ) {
+            int size = Math.min(chunk.length, count - done);
+            handle.generateDerivedAddresses(fromIndex + done, size, chunk, 0);
+            for (int i = 0; i < size; i++) {
+                add(chunk[i].getScriptHash(), 0);
+                chunk[i] = null;
+            }
+            done += size;
+        }
+    }
+
+    /**
+     * Check whether the address given by the hash it encodes might have been added.
+     *
+     * @param hash   buffer containing the hash
+     * @param offset offset of the hash in the buffer, at least 16 bytes of it are used
+     * @return false if the address was surely not added, true if it probably was
+     */
+    public boolean mightContain(
+            @NonNull byte[] hash,
+            int offset
+    ) {
+        long h1 = readLong(hash, offset);
+        long h2 = readLong(hash, offset + 8) | 1L;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the address might have been added.
+     *
+     * @param network network of the address
+     * @param address address
+     * @return false if the address was surely not added, true if it probably was
+     * @throws CryptoJException if the address is not valid for the network
+     */
+    public boolean mightContain(
+            @NonNull Network network,
+            @NonNull String address
+    ) throws CryptoJException {
+        byte[] hash = CryptoJ.decodeAddressHash(network, address);
+        return hash.length >= 16 && mightContain(hash, 0);
+    }
+
+    /**
+     * Add all addresses of another filter to this one.
+     *
+     * @param other filter of the same size and number of hash functions
+     */
+    public void merge(
+            @NonNull AddressFilter other
+    ) {
+        if (other.bitCount != bitCount || other.hashCount != hashCount) {
+            throw new IllegalArgumentException("Filters of different size or number of hash functions cannot be merged.");
+        }
+        for (int i = 0; i < words.length; i++) {
+            words[i] |= other.words[i];
+        }
+        entryCount += other.entryCount;
+    }
+
+    /**
+     * @return false positive rate expected for the current number of added addresses, (1 - e^(-k * n / m))^k
+     */
+    public double getCurrentFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-hashCount * (double) entryCount / bitCount), hashCount);
+    }
+
+    /**
+     * @return size of the serialized filter in bytes
+     */
+    public long getSerializedLength() {
+        return 40 + (long) words.length * Long.BYTES;
+    }
+
+    /**
+     * Serialize filter.
+     *
+     * @param out stream to write the filter to, it is not closed
+     * @throws IOException if writing fails
+     */
+    public void writeTo(
+            @NonNull OutputStream out
+    ) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeLong(expectedEntries);
+        data.writeDouble(falsePositiveRate);
+        data.writeInt(hashCount);
+        data.writeInt(words.length);
+        data.writeLong(entryCount);
+        for (long word : words) {
+            data.writeLong(word);
+        }
+        data.flush();
+    }
+
+    /**
+     * Deserialize filter written by {@link #writeTo(OutputStream)}.
+     *
+     * @param in stream to read the filter from, it is not closed
+     * @return filter
+     * @throws IOException if reading fails or the data is not a filter
+     */
+    public static AddressFilter readFrom(
+            @NonNull InputStream in
+    ) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Invalid address filter data.");
+        }
+        long expectedEntries = data.readLong();
+        double falsePositiveRate = data.readDouble();
+        int hashCount = data.readInt();
+        int wordCount = data.readInt();
+        long entryCount = data.readLong();
+        // the geometry is derived from the parameters, so a corrupted header cannot force a huge allocation
+        // or number of hash functions the parameters do not imply
+        long bitCount;
+        try {
+            bitCount = bitCount(expectedEntries, falsePositiveRate);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Invalid address filter data.", ex);
+        }
+        if ((long) wordCount * 64 != bitCount || hashCount != hashCount(expectedEntries, bitCount) || entryCount < 0) {
+            throw new IOException("Invalid address filter data.");
+        }
+        long[] words = new long[wordCount];
+        for (int i = 0; i < wordCount; i++) {
+            words[i] = data.readLong();
+        }
+        return new AddressFilter(expectedEntries, falsePositiveRate, bitCount, hashCount, entryCount, words);
+    }
+
+    /**
+     * Optimal size m = -n * ln(p) / ln(2)^2, rounded up to whole words.
+     */
+    private static long bitCount(long expectedEntries, double falsePositiveRate) {
+        if (expectedEntries < 1) {
+            throw new IllegalArgumentException("Expected entries must be at least 1.");
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1.");
+        }
+        long bitCount = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bitCount = Math.max(64, (bitCount + 63) & ~63L);
+        if (bitCount / 64 > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Filter is too large.");
+        }
+        return bitCount;
+    }
+
+    /**
+     * Optimal number of hash functions k = m / n * ln(2).
+     */
+    private static int hashCount(long expectedEntries, long bitCount) {
+        return (int) Math.max(1, Math.round((double) bitCount / expectedEntries * Math.log(2)));
+    }
+
+    private static long readLong(byte[] b, int offset) {
+        long v = 0L;
+        for (int i = 0; i < 8; i++) {
+            v = (v << 8) | (b[offset + i] & 0xffL);
+        }
+        return v;
+    }
+
+}
@@ -0,0 +1,360 @@
+package cryptoj.index;
+
+import cryptoj.CryptoJ;
+import cryptoj.classes.DerivedAddress;
+import cryptoj.classes.XPubHandle;
+import cryptoj.enums.Network;
+import cryptoj.exceptions.CryptoJException;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * In-memory reverse index from address to (xPub, derivation index).<br>
+ * <br>
+ * Addresses are keyed by the 20 bytes long hash they encode ({@link DerivedAddress#getScriptHash()}), which is
+ * uniformly distributed, so its first bits serve as the hash code directly. The table is a primitive
+ * open-addressing table with linear probing, stored in one long[] - 3 words per slot: the first 16 bytes of the
+ * hash, and the xPub id packed with the derivation index. With the load factor of 0.75 this is 32 bytes per
+ * entry. The last 4 bytes of the hash are not stored, the chance of a false match is 2^-128 per lookup.<br>
+ * <br>
+ * Lookups run under a shared read lock, so they may run concurrently. Addresses are derived outside of any lock
+ * and inserted in chunks under the write lock, so extending a range does not block lookups for long.<br>
+ * <br>
+ * The hash does not carry the network, e.g. the same key has the same hash160 on Bitcoin and Litecoin. Index
+ * xPubs of one coin only, or use one index per coin; for a duplicate hash the first inserted location is kept.
+ */
+@FieldDefaults(level = PRIVATE)
+public class AddressIndex {
+
+    public static final int HASH_LENGTH = 20;
+
+    private static final int SLOT_WORDS = 3;
+    private static final long OCCUPIED = 1L << 31;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int MAX_CAPACITY = (Integer.MAX_VALUE - 8) / SLOT_WORDS;
+    private static final int EXTEND_CHUNK_SIZE = 4096;
+
+    final ReadWriteLock lock = new ReentrantReadWriteLock();
+    final List<XPubEntry> xPubs = new ArrayList<>();
+
+    long[] table;
+    int capacity;
+    int size;
+
+    /**
+     * Create empty index.
+     *
+     * @param expectedEntries expected number of indexed addresses, the table grows when it is exceeded
+     */
+    public AddressIndex(
+            int expectedEntries
+    ) {
+        if (expectedEntries < 0) {
+            throw new IllegalArgumentException("Expected entries must not be negative.");
+        }
+        this.capacity = capacityFor(Math.max(expectedEntries, 16));
+        this.table = new long[capacity * SLOT_WORDS];
+    }
+
+    /**
+     * Register xPub, its addresses are indexed by {@link #extend(int, int)}.
+     *
+     * @param handle parsed xPub
+     * @return xPub id, which is reported by lookups
+     */
+    public int register(
+            @NonNull XPubHandle handle
+    ) {
+        lock.writeLock().lock();
+        try {
+            xPubs.add(new XPubEntry(handle));
+            return xPubs.size() - 1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Make sure the addresses of derivation indexes 0 .. count - 1 of the xPub are indexed. Only the addresses
+     * which were not indexed yet are derived, so growing a range costs just the new part of it.
+     *
+     * @param xPubId id of registered xPub
+     * @param count  number of addresses from derivation index 0 which should be indexed
+     * @throws CryptoJException if the xPub id or the count is invalid
+     */
+    public void extend(
+            int xPubId,
+            int count
+    ) throws CryptoJException {
+        XPubEntry entry = getEntry(xPubId);
+        XPubHandle.checkDerivationRange(0, count);
+
+        synchronized (entry) { // one extension of an xPub at a time, so no index is derived twice
+            DerivedAddress[] chunk = new DerivedAddress[Math.min(EXTEND_CHUNK_SIZE, Math.max(count - entry.indexedCount, 0))];
+            while (entry.indexedCount < count) {
+                int from = entry.indexedCount;
+                int size = Math.min(chunk.length, count - from);
+                entry.handle.generateDerivedAddresses(from, size, chunk, 0);
+
+                lock.writeLock().lock();
+                try {
+                    ensureCapacity(this.size + size);
+                    for (int i = 0; i < size; i++) {
+                        insert(chunk[i].getScriptHash(), xPubId, from + i);
+                        chunk[i] = null;
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                entry.indexedCount = from + size;
+            }
+        }
+    }
+
+    /**
+     * Find location of an address given by the hash it encodes, without any allocation.
+     *
+     * @param hash   buffer containing the hash
+     * @param offset offset of the 20 bytes long hash in the buffer
+     * @return xPub id and derivation index packed by {@link #pack(int, int)}, or -1 if the address is not indexed
+     */
+    public long findPacked(
+            @NonNull byte[] hash,
+            int offset
+    ) {
+        long w0 = readLong(hash, offset);
+        long w1 = readLong(hash, offset + 8);
+
+        lock.readLock().lock();
+        try {
+            for (int slot = homeSlot(w0); ; slot = slot + 1 == capacity ? 0 : slot + 1) {
+                int p = slot * SLOT_WORDS;
+                long value = table[p + 2];
+                if (value == 0L) {
+                    return -1L;
+                }
+                if (table[p] == w0 && table[p + 1] == w1) {
+                    return value & ~OCCUPIED;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find location of an address given by the hash it encodes.
+     *
+     * @param hash hash encoded in the address
+     * @return location of the address, or null if the address is not indexed
+     */
+    public Location find(
+            @NonNull byte[] hash
+    ) {
+        if (hash.length != HASH_LENGTH) {
+            return null;
+        }
+        long packed = findPacked(hash, 0);
+        if (packed < 0) {
+            return null;
+        }
+        return new Location(getHandle(xPubIdOf(packed)), xPubIdOf(packed), derivationIndexOf(packed));
+    }
+
+    /**
+     * Find location of an address.
+     *
+     * @param network network of the address
+     * @param address address
+     * @return location of the address, or null if the address is not indexed
+     * @throws CryptoJException if the address is not valid for the network
+     */
+    public Location find(
+            @NonNull Network network,
+            @NonNull String address
+    ) throws CryptoJException {
+        return find(CryptoJ.decodeAddressHash(network, address));
+    }
+
+    /**
+     * @param xPubId id of registered xPub
+     * @return number of indexed addresses of the xPub, they are derivation indexes 0 .. count - 1
+     * @throws CryptoJException if the xPub id is invalid
+     */
+    public int getIndexedCount(
+            int xPubId
+    ) throws CryptoJException {
+        XPubEntry entry = getEntry(xPubId);
+        synchronized (entry) {
+            return entry.indexedCount;
+        }
+    }
+
+    /**
+     * @return number of indexed addresses
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return memory used by the table in bytes
+     */
+    public long getTableBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) table.length * Long.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Pack xPub id and derivation index into one long.
+     *
+     * @param xPubId          xPub id
+     * @param derivationIndex derivation index
+     * @return packed location
+     */
+    public static long pack(int xPubId, int derivationIndex) {
+        return ((long) xPubId << 32) | derivationIndex;
+    }
+
+    public static int xPubIdOf(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    public static int derivationIndexOf(long packed) {
+        return (int) (packed & Integer.MAX_VALUE);
+    }
+
+    private XPubEntry getEntry(int xPubId) throws CryptoJException {
+        lock.readLock().lock();
+        try {
+            if (xPubId < 0 || xPubId >= xPubs.size()) {
+                throw new CryptoJException("Invalid xPub id.");
+            }
+            return xPubs.get(xPubId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private XPubHandle getHandle(int xPubId) {
+        lock.readLock().lock();
+        try {
+            return xPubs.get(xPubId).handle;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Insert entry, the caller holds the write lock and has ensured capacity.
+     */
+    private void insert(byte[] hash, int xPubId, int derivationIndex) {
+        long w0 = readLong(hash, 0);
+        long w1 = readLong(hash, 8);
+        for (int slot = homeSlot(w0); ; slot = slot + 1 == capacity ? 0 : slot + 1) {
+            int p = slot * SLOT_WORDS;
+            if (table[p + 2] == 0L) {
+                table[p] = w0;
+                table[p + 1] = w1;
+                table[p + 2] = pack(xPubId, derivationIndex) | OCCUPIED;
+                size++;
+                return;
+            }
+            if (table[p] == w0 && table[p + 1] == w1) {
+                return; // already indexed
+            }
+        }
+    }
+
+    private void ensureCapacity(int entries) {
+        if (entries <= (long) capacity * LOAD_FACTOR) {
+            return;
+        }
+        long[] oldTable = table;
+        int oldCapacity = capacity;
+        capacity = capacityFor(Math.max(entries, (int) Math.min((long) size * 3 / 2, Integer.MAX_VALUE)));
+        table = new long[capacity * SLOT_WORDS];
+
+        for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+            int op = oldSlot * SLOT_WORDS;
+            if (oldTable[op + 2] == 0L) {
+                continue;
+            }
+            int slot = homeSlot(oldTable[op]);
+            while (table[slot * SLOT_WORDS + 2] != 0L) {
+                slot = slot + 1 == capacity ? 0 : slot + 1;
+            }
+            System.arraycopy(oldTable, op, table, slot * SLOT_WORDS, SLOT_WORDS);
+        }
+    }
+
+    private int homeSlot(long w0) {
+        // the hash is uniform, so its top 31 bits are scaled to the capacity (no power of two needed)
+        return (int) (((w0 >>> 33) * capacity) >>> 31);
+    }
+
+    private static int capacityFor(int entries) {
+        long capacity = (long) Math.ceil(entries / (double) LOAD_FACTOR) + 1;
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("Address index is full.");
+        }
+        return (int) capacity;
+    }
+
+    private static long readLong(byte[] b, int offset) {
+        long v = 0L;
+        for (int i = 0; i < 8; i++) {
+            v = (v << 8) | (b[offset + i] & 0xffL);
+        }
+        return v;
+    }
+
+    /**
+     * Location of an indexed address.
+     */
+    @Getter
+    @FieldDefaults(level = PRIVATE, makeFinal = true)
+    public static class Location {
+
+        XPubHandle handle;
+        int xPubId;
+        int derivationIndex;
+
+        Location(XPubHandle handle, int xPubId, int derivationIndex) {
+            this.handle = handle;
+            this.xPubId = xPubId;
+            this.derivationIndex = derivationIndex;
+        }
+
+    }
+
+    @FieldDefaults(level = PRIVATE)
+    private static class XPubEntry {
+
+        final XPubHandle handle;
+        int indexedCount;
+
+        XPubEntry(XPubHandle handle) {
+            this.handle = handle;
+        }
+
+    }
+
+}
@@ -0,0 +1,325 @@
+package cryptoj.index;
+
+import cryptoj.classes.XPubHandle;
+import cryptoj.exceptions.CryptoJException;
+import cryptoj.tools.FileTools;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+import org.bitcoinj.core.Utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Allocator of fresh derivation indexes per xPub, which never hands out the same index twice, even across restarts.<br>
+ * <br>
+ * Every xPub (identified by its fingerprint) has its own atomic counter, so allocations of different xPubs never
+ * contend and allocation of an index is a single atomic increment. Indexes are reserved in blocks: only when the
+ * counter passes the reserved limit, the new limit is appended to a memory-mapped log and forced to disk. Threads
+ * waiting for durability at the same time share one force (group commit).<br>
+ * <br>
+ * On restart the counters continue from the persisted limits, so indexes reserved but not handed out before the
+ * restart are skipped, never reused. When the log is full, it is compacted to one record per xPub.
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class IndexAllocator implements Closeable {
+
+    public static final int DEFAULT_BLOCK_SIZE = 1000;
+
+    private static final long INDEX_LIMIT = 1L << 31;
+
+    @Getter
+    int blockSize;
+    ConcurrentHashMap<Long, Counter> counters = new ConcurrentHashMap<>();
+    AllocationLog log;
+
+    private IndexAllocator(int blockSize, AllocationLog log) {
+        this.blockSize = blockSize;
+        this.log = log;
+        log.persisted.forEach((fingerprint, limit) -> counters.put(fingerprint, new Counter(limit)));
+    }
+
+    /**
+     * Open allocator, the log file is created if it does not exist.
+     *
+     * @param logFile   log of reserved limits
+     * @param blockSize number of indexes reserved by one log record
+     * @return allocator
+     * @throws IOException if the log cannot be opened
+     */
+    public static IndexAllocator open(
+            @NonNull Path logFile,
+            int blockSize
+    ) throws IOException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be at least 1.");
+        }
+        return new IndexAllocator(blockSize, AllocationLog.open(logFile));
+    }
+
+    /**
+     * Fingerprint of xPub - first 8 bytes of hash160 of its public key and chain code.
+     *
+     * @param handle parsed xPub
+     * @return fingerprint
+     */
+    public static long fingerprint(
+            @NonNull XPubHandle handle
+    ) {
+        byte[] keyAndChainCode = new byte[65];
+        System.arraycopy(handle.getKey().getPubKey(), 0, keyAndChainCode, 0, 33);
+        System.arraycopy(handle.getKey().getChainCode(), 0, keyAndChainCode, 33, 32);
+        return ByteBuffer.wrap(Utils.sha256hash160(keyAndChainCode)).getLong();
+    }
+
+    /**
+     * Allocate next unused derivation index of xPub.
+     *
+     * @param handle parsed xPub
+     * @return derivation index, which has never been allocated before
+     * @throws CryptoJException if all derivation indexes of the xPub are allocated
+     * @throws IOException      if the reservation cannot be persisted
+     */
+    public int allocate(
+            @NonNull XPubHandle handle
+    ) throws CryptoJException, IOException {
+        return allocate(fingerprint(handle));
+    }
+
+    /**
+     * Allocate next unused derivation index of xPub.
+     *
+     * @param fingerprint fingerprint of xPub, see {@link #fingerprint(XPubHandle)}
+     * @return derivation index, which has never been allocated before
+     * @throws CryptoJException if all derivation indexes of the xPub are allocated
+     * @throws IOException      if the reservation cannot be persisted
+     */
+    public int allocate(
+            long fingerprint
+    ) throws CryptoJException, IOException {
+        Counter counter = counters.computeIfAbsent(fingerprint, key -> new Counter(0L));
+        long index = counter.next.getAndIncrement();
+        if (index >= INDEX_LIMIT) {
+            throw new CryptoJException("Derivation indexes of the xPub are exhausted.");
+        }
+        if (index < counter.limit) {
+            return (int) index;
+        }
+
+        synchronized (counter) {
+            if (index >= counter.limit) {
+                long limit = Math.min(Math.max(counter.limit + blockSize, index + 1), INDEX_LIMIT);
+                log.awaitDurable(log.append(fingerprint, limit));
+                counter.limit = limit;
+            }
+        }
+        return (int) index;
+    }
+
+    /**
+     * @param fingerprint fingerprint of xPub
+     * @return derivation index the next allocation of the xPub returns (if there is no concurrent allocation)
+     */
+    public long peek(
+            long fingerprint
+    ) {
+        Counter counter = counters.get(fingerprint);
+        return counter == null ? 0L : counter.next.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    @FieldDefaults(level = PRIVATE)
+    private static class Counter {
+
+        final AtomicLong next;
+        volatile long limit;
+
+        Counter(long limit) {
+            this.next = new AtomicLong(limit);
+            this.limit = limit;
+        }
+
+    }
+
+    /**
+     * Append-only log of reserved limits - 16 bytes long header and 16 bytes long records of fingerprint (8 bytes),
+     * limit (4) and check (4). A record with an invalid check ends the log, it was torn by a crash.
+     */
+    @FieldDefaults(level = PRIVATE)
+    private static class AllocationLog implements Closeable {
+
+        static final int MAGIC = 0x434a4941; // "CJIA"
+        static final int VERSION = 1;
+        static final int HEADER_LENGTH = 16;
+        static final int RECORD_LENGTH = 16;
+        static final int INITIAL_RECORDS = 65536;
+
+        final Path file;
+        final Map<Long, Long> persisted = new HashMap<>();
+        final AtomicLong durableSeq = new AtomicLong();
+        final Object forceLock = new Object();
+
+        FileChannel channel;
+        MappedByteBuffer buffer;
+        int position;
+        int durablePosition;
+        long writtenSeq;
+
+        private AllocationLog(Path file) {
+            this.file = file;
+        }
+
+        static AllocationLog open(Path file) throws IOException {
+            AllocationLog log = new AllocationLog(file);
+            if (Files.exists(file)) {
+                log.map(file);
+                log.replay();
+            } else {
+                log.rewrite(INITIAL_RECORDS);
+            }
+            return log;
+        }
+
+        /**
+         * Append record of a new limit.
+         *
+         * @return sequence number of the record, pass it to {@link #awaitDurable(long)}
+         */
+        synchronized long append(long fingerprint, long limit) throws IOException {
+            persisted.put(fingerprint, limit);
+            if (position + RECORD_LENGTH > buffer.capacity()) {
+                // compaction writes all the persisted limits, including this one, and forces them
+                writtenSeq++;
+                rewrite(Math.max(INITIAL_RECORDS, persisted.size() * 2));
+                return writtenSeq;
+            }
+            buffer.putLong(position, fingerprint);
+            buffer.putInt(position + 8, (int) limit);
+            buffer.putInt(position + 12, check(fingerprint, limit));
+            position += RECORD_LENGTH;
+            return ++writtenSeq;
+        }
+
+        /**
+         * Wait until the record is forced to disk. One thread forces all records written so far, the others
+         * waiting at the same time find their records already durable.
+         */
+        void awaitDurable(long seq) throws IOException {
+            if (durableSeq.get() >= seq) {
+                return;
+            }
+            synchronized (forceLock) {
+                if (durableSeq.get() >= seq) {
+                    return;
+                }
+                MappedByteBuffer forced;
+                int from;
+                int to;
+                long toSeq;
+                synchronized (this) {
+                    forced = buffer;
+                    from = durablePosition;
+                    to = position;
+                    toSeq = writtenSeq;
+                }
+                forced.force(from, to - from);
+                synchronized (this) {
+                    if (forced == buffer) {
+                        durablePosition = Math.max(durablePosition, to);
+                    }
+                }
+                durableSeq.accumulateAndGet(toSeq, Math::max);
+            }
+        }
+
+        private void replay() throws IOException {
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Corrupted allocation log: " + file);
+            }
+            position = HEADER_LENGTH;
+            while (position + RECORD_LENGTH <= buffer.capacity()) {
+                long fingerprint = buffer.getLong(position);
+                long limit = buffer.getInt(position + 8) & 0xffffffffL;
+                if (limit == 0 || buffer.getInt(position + 12) != check(fingerprint, limit)) {
+                    break;
+                }
+                persisted.merge(fingerprint, limit, Math::max);
+                position += RECORD_LENGTH;
+            }
+            durablePosition = position;
+            // clear a torn record, so it is not mistaken for a valid one once the log continues after it
+            for (int p = position; p < Math.min(position + RECORD_LENGTH, buffer.capacity()); p++) {
+                buffer.put(p, (byte) 0);
+            }
+        }
+
+        /**
+         * Write all persisted limits into a new log file and replace the current one atomically.
+         */
+        private void rewrite(int capacityRecords) throws IOException {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer map = out.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_LENGTH + (long) capacityRecords * RECORD_LENGTH);
+                map.putInt(0, MAGIC);
+                map.putInt(4, VERSION);
+                int p = HEADER_LENGTH;
+                for (Map.Entry<Long, Long> entry : persisted.entrySet()) {
+                    map.putLong(p, entry.getKey());
+                    map.putInt(p + 8, entry.getValue().intValue());
+                    map.putInt(p + 12, check(entry.getKey(), entry.getValue()));
+                    p += RECORD_LENGTH;
+                }
+                map.force();
+            }
+            FileTools.moveDurably(tmp, file);
+
+            if (channel != null) {
+                channel.close();
+            }
+            map(file);
+            position = HEADER_LENGTH + persisted.size() * RECORD_LENGTH;
+            durablePosition = position;
+            durableSeq.accumulateAndGet(writtenSeq, Math::max);
+        }
+
+        private void map(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() < HEADER_LENGTH || channel.size() > Integer.MAX_VALUE) {
+                channel.close();
+                throw new IOException("Invalid allocation log length: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+
+        private static int check(long fingerprint, long limit) {
+            long h = (fingerprint ^ (limit * 0x9e3779b97f4a7c15L)) * 0xbf58476d1ce4e5b9L;
+            return (int) (h ^ (h >>> 31)) | 1;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            buffer.force();
+            channel.close();
+        }
+
+    }
+
+}
@@ -1,5 +1,6 @@
 package cryptoj.network;
 
+import cryptoj.enums.Network;
 import org.bitcoinj.params.TestNet3Params;
 
 /**
@@ -7,40 +8,30 @@ import org.bitcoinj.params.TestNet3Params;
  */
 public class WrappedTestNetParams extends TestNet3Params implements IWrappedNetParams {
 
-    private static WrappedTestNetParams instance;
+    private final Network network;
 
     /**
-     * Get ltc main net params.
+     * Create test net params with BIP32 headers of the network. The params are never changed afterwards,
+     * so one instance per network can be safely shared between threads.
      *
-     * @return the ltc main net params
+     * @param network the network
      */
-    public static synchronized WrappedTestNetParams get() {
-        if (instance == null) {
-            instance = new WrappedTestNetParams();
-        }
-        return instance;
+    public WrappedTestNetParams(final Network network) {
+        super();
+        this.network = network;
+        this.segwitAddressHrp = network.getBech32();
+        this.addressHeader = network.getPubKeyHash();
+        this.p2shHeader = network.getScriptHash();
+        this.dumpedPrivateKeyHeader = network.getWif();
+        this.bip32HeaderP2PKHpub = network.getP2pkhPub();
+        this.bip32HeaderP2PKHpriv = network.getP2pkhPriv();
+        this.bip32HeaderP2WPKHpub = network.getP2wpkhPub();
+        this.bip32HeaderP2WPKHpriv = network.getP2wpkhPriv();
     }
 
-    // Change BIP32 headers for different coins
     @Override
-    public void setBIP32Headers(
-            final String bech32,
-            final int pubKeyHash,
-            final int scriptHash,
-            final int wif,
-            final int p2pkhPub,
-            final int p2pkhPriv,
-            final int p2wpkhPub,
-            final int p2wpkhPriv
-    ) {
-        this.segwitAddressHrp = bech32;
-        this.addressHeader = pubKeyHash;
-        this.p2shHeader = scriptHash;
-        this.dumpedPrivateKeyHeader = wif;
-        this.bip32HeaderP2PKHpub = p2pkhPub;
-        this.bip32HeaderP2PKHpriv = p2pkhPriv;
-        this.bip32HeaderP2WPKHpub = p2wpkhPub;
-        this.bip32HeaderP2WPKHpriv = p2wpkhPriv;
+    public Network getNetwork() {
+        return network;
     }
 
 }
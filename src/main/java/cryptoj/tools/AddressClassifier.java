@@ -0,0 +1,173 @@
+package cryptoj.tools;
+
+import cryptoj.classes.AddressClassification;
+import cryptoj.enums.AddressStatus;
+import cryptoj.enums.AddressType;
+import cryptoj.enums.CoinType;
+import cryptoj.enums.Network;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Classification of an address across all networks in one pass.<br>
+ * <br>
+ * Instead of parsing the address once per network, the format is chosen by the leading characters ("0x" or a
+ * known Bech32 HRP like "bc1", "tb1", "bcrt1", "ltc1", "tltc1"), the payload is decoded once and its version byte or
+ * HRP is looked up in tables precomputed from {@link Network}. Networks are kept as bit masks of their ordinals,
+ * so matching is a few bitwise operations.<br>
+ * <br>
+ * The resulting networks are exactly the ones for which {@link AddressValidator#validate(Network, CharSequence)}
+ * reports {@link AddressStatus#VALID}.
+ */
+public class AddressClassifier {
+
+    private static final AddressClassification INVALID = new AddressClassification(Collections.emptySet(), null, null);
+
+    private static final Network[] NETWORKS = Network.values();
+    private static final int ALL_MASK = (1 << NETWORKS.length) - 1;
+    private static final int ETH_MASK;
+
+    private static final int[] VERSION_MASK = new int[256];
+    private static final AddressType[] VERSION_TYPE = new AddressType[256];
+
+    private static final String[] HRPS;
+    private static final int[] HRP_MASK;
+
+    static {
+        int ethMask = 0;
+        List<String> hrps = new ArrayList<>();
+        for (Network network : NETWORKS) {
+            int bit = 1 << network.ordinal();
+            if (network.getCoinType() == CoinType.ETH) {
+                ethMask |= bit;
+            }
+            VERSION_MASK[network.getPubKeyHash()] |= bit;
+            VERSION_MASK[network.getScriptHash()] |= bit;
+            if (VERSION_TYPE[network.getPubKeyHash()] == null) {
+                VERSION_TYPE[network.getPubKeyHash()] = AddressType.P2PKH_LEGACY;
+            }
+            if (VERSION_TYPE[network.getScriptHash()] == null) {
+                VERSION_TYPE[network.getScriptHash()] = AddressType.P2SH_PAY_TO_SCRIPT_HASH;
+            }
+            if (hrps.contains(network.getBech32()) == false) {
+                hrps.add(network.getBech32());
+            }
+        }
+        ETH_MASK = ethMask;
+
+        HRPS = hrps.toArray(new String[0]);
+        HRP_MASK = new int[HRPS.length];
+        for (Network network : NETWORKS) {
+            HRP_MASK[hrps.indexOf(network.getBech32())] |= 1 << network.ordinal();
+        }
+    }
+
+    /**
+     * Classify address - find all networks for which it is valid and detect its address type.
+     *
+     * @param address address to be classified
+     * @return classification, with empty networks if the address is not valid for any network
+     */
+    public static AddressClassification classify(
+            @NonNull CharSequence address
+    ) {
+        if (address.length() >= 2 && address.charAt(0) == '0' && address.charAt(1) == 'x') {
+            // no other format accepts "0x" - '0' is not a Base58 character and there is no such HRP
+            return classifyHex(address);
+        }
+
+        int hrp = matchHrp(address);
+        int bech32Mask = ALL_MASK; // networks whose validation continues with Bech32 after Base58 has failed
+        if (hrp < 0 || isBase58Candidate(address)) {
+            byte[] decoded = new byte[64];
+            int length = Base58Codec.decodeChecked(address, decoded);
+            if (length > 0) {
+                int version = decoded[0] & 0xff;
+                if (length - 1 == 20) {
+                    return result(VERSION_MASK[version], VERSION_TYPE[version], Arrays.copyOfRange(decoded, 1, 21));
+                }
+                // networks of other versions reject the address as wrong network without trying Bech32
+                bech32Mask = VERSION_MASK[version];
+            }
+        }
+        if (hrp < 0 || (bech32Mask & HRP_MASK[hrp]) == 0) {
+            return INVALID;
+        }
+        return classifyBech32(address, bech32Mask & HRP_MASK[hrp]);
+    }
+
+    private static AddressClassification classifyHex(CharSequence address) {
+        byte[] hash = new byte[20];
+        if (address.length() != 42 || HexCodec.decode(address, 2, 40, hash, 0) != 20) {
+            return INVALID;
+        }
+        return result(ETH_MASK, AddressType.P2PKH_LEGACY, hash);
+    }
+
+    private static AddressClassification classifyBech32(CharSequence address, int mask) {
+        byte[] values = new byte[Bech32Codec.MAX_LENGTH];
+        int result = Bech32Codec.decode(address, values);
+        if (result < 0) {
+            return INVALID;
+        }
+        byte[] program = new byte[64];
+        if (AddressValidator.checkWitnessProgram(result, values, program) != AddressStatus.VALID) {
+            return INVALID;
+        }
+        int witnessVersion = values[0];
+        int programLength = ((result & 0xff) - 1) * 5 / 8;
+        AddressType addrType = null;
+        if (witnessVersion == 0 && programLength == 20) {
+            addrType = AddressType.P2WPKH_NATIVE_SEGWIT;
+        } else if (witnessVersion == 1 && programLength == 32) {
+            addrType = AddressType.P2TR_TAPROOT;
+        }
+        return result(mask, addrType, Arrays.copyOf(program, programLength));
+    }
+
+    /**
+     * @return index of the HRP the address starts with (followed by the separator), or -1
+     */
+    private static int matchHrp(CharSequence address) {
+        for (int i = 0; i < HRPS.length; i++) {
+            if (Bech32Codec.hrpEquals(address, HRPS[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A Bech32 address is also tried as Base58 (as the per-network validation does) only if it has no character
+     * which Base58 excludes - most of them have, so they are decoded once.
+     */
+    private static boolean isBase58Candidate(CharSequence address) {
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (c == '0' || c == 'O' || c == 'I' || c == 'l') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static AddressClassification result(int mask, AddressType addrType, byte[] hash) {
+        if (mask == 0) {
+            return INVALID;
+        }
+        Set<Network> networks = EnumSet.noneOf(Network.class);
+        for (Network network : NETWORKS) {
+            if ((mask & (1 << network.ordinal())) != 0) {
+                networks.add(network);
+            }
+        }
+        return new AddressClassification(Collections.unmodifiableSet(networks), addrType, hash);
+    }
+
+}
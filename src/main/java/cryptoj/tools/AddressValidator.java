@@ -0,0 +1,143 @@
+package cryptoj.tools;
+
+import cryptoj.enums.AddressStatus;
+import cryptoj.enums.CoinType;
+import cryptoj.enums.Network;
+import lombok.NonNull;
+
+/**
+ * Address validation which reports the result by {@link AddressStatus}, without throwing any exception.<br>
+ * <br>
+ * It accepts exactly the same addresses as bitcoinj's Address.fromString() with the network params of
+ * {@link Network}: Base58Check addresses with the P2PKH or P2SH version byte of the network and a 20 bytes long
+ * hash, and Bech32 (witness version 0) or Bech32m (witness version 1 - 16) addresses with the HRP of the network.
+ * Ethereum networks additionally accept 0x-prefixed hexadecimal addresses.
+ */
+public class AddressValidator {
+
+    private static final int MAX_DECODED_LENGTH = 64;
+
+    /**
+     * Validate address for the network.
+     *
+     * @param network network
+     * @param address address to be validated
+     * @return {@link AddressStatus#VALID} or the reason why the address is not valid
+     */
+    public static AddressStatus validate(
+            @NonNull Network network,
+            @NonNull CharSequence address
+    ) {
+        if (network.getCoinType() == CoinType.ETH && address.length() >= 2 && address.charAt(0) == '0' && address.charAt(1) == 'x') {
+            return validateHex(address);
+        }
+
+        AddressStatus base58Status = validateBase58(network, address);
+        if (base58Status == AddressStatus.VALID || base58Status == AddressStatus.WRONG_NETWORK) {
+            return base58Status;
+        }
+
+        AddressStatus bech32Status = validateBech32(network, address);
+        if (bech32Status == AddressStatus.VALID) {
+            return bech32Status;
+        }
+        // report the failure of the format which got further in decoding
+        switch (bech32Status) {
+            case WRONG_NETWORK:
+            case INVALID_WITNESS_VERSION:
+            case INVALID_DATA_LENGTH:
+                return bech32Status;
+            default:
+                return base58Status == AddressStatus.INVALID_CHARACTER ? bech32Status : base58Status;
+        }
+    }
+
+    private static AddressStatus validateHex(CharSequence address) {
+        if (address.length() != 42) { // 20bytes + "0x" = 42 characters
+            return AddressStatus.INVALID_LENGTH;
+        }
+        for (int i = 2; i < 42; i++) {
+            char c = address.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+                return AddressStatus.INVALID_CHARACTER;
+            }
+        }
+        return AddressStatus.VALID;
+    }
+
+    private static AddressStatus validateBase58(Network network, CharSequence address) {
+        byte[] decoded = new byte[MAX_DECODED_LENGTH];
+        int length = Base58Codec.decodeChecked(address, decoded);
+        switch (length) {
+            case Base58Codec.INVALID_CHARACTER:
+                return AddressStatus.INVALID_CHARACTER;
+            case Base58Codec.BUFFER_TOO_SMALL:
+            case Base58Codec.TOO_SHORT:
+            case 0:
+                return AddressStatus.INVALID_LENGTH;
+            case Base58Codec.INVALID_CHECKSUM:
+                return AddressStatus.INVALID_CHECKSUM;
+            default:
+                int version = decoded[0] & 0xff;
+                if (version != network.getPubKeyHash() && version != network.getScriptHash()) {
+                    return AddressStatus.WRONG_NETWORK;
+                }
+                return length - 1 == 20 ? AddressStatus.VALID : AddressStatus.INVALID_DATA_LENGTH;
+        }
+    }
+
+    private static AddressStatus validateBech32(Network network, CharSequence address) {
+        byte[] values = new byte[Bech32Codec.MAX_LENGTH];
+        int result = Bech32Codec.decode(address, values);
+        switch (result) {
+            case Bech32Codec.INVALID_LENGTH:
+            case Bech32Codec.BUFFER_TOO_SMALL:
+                return AddressStatus.INVALID_LENGTH;
+            case Bech32Codec.INVALID_CHARACTER:
+                return AddressStatus.INVALID_CHARACTER;
+            case Bech32Codec.MISSING_SEPARATOR:
+                return AddressStatus.INVALID_PREFIX;
+            case Bech32Codec.INVALID_CHECKSUM:
+                return AddressStatus.INVALID_CHECKSUM;
+            default:
+                break;
+        }
+        if (Bech32Codec.hrpEquals(address, network.getBech32()) == false) {
+            return AddressStatus.WRONG_NETWORK;
+        }
+
+        return checkWitnessProgram(result, values, new byte[MAX_DECODED_LENGTH]);
+    }
+
+    /**
+     * Check witness version and witness program of decoded Bech32 data.
+     *
+     * @param result  result of {@link Bech32Codec#decode(CharSequence, byte[])}
+     * @param values  decoded 5-bit values
+     * @param program buffer to write the witness program to, at least 40 bytes
+     * @return {@link AddressStatus#VALID} or the reason why the address is not valid
+     */
+    static AddressStatus checkWitnessProgram(int result, byte[] values, byte[] program) {
+        int encoding = result >>> 8;
+        int length = result & 0xff;
+        if (length < 1) {
+            return AddressStatus.INVALID_DATA_LENGTH;
+        }
+        int witnessVersion = values[0];
+        if (witnessVersion > 16) {
+            return AddressStatus.INVALID_WITNESS_VERSION;
+        }
+        int programLength = Bech32Codec.convert5To8(values, 1, length - 1, program);
+        if (programLength < 2 || programLength > 40) {
+            return AddressStatus.INVALID_DATA_LENGTH;
+        }
+        if (witnessVersion == 0 && programLength != 20 && programLength != 32) {
+            return AddressStatus.INVALID_DATA_LENGTH;
+        }
+        if ((witnessVersion == 0) != (encoding == Bech32Codec.BECH32)) {
+            return AddressStatus.INVALID_WITNESS_VERSION;
+        }
+        return AddressStatus.VALID;
+    }
+
+}
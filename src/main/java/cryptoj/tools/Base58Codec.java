@@ -0,0 +1,243 @@
+package cryptoj.tools;
+
+import org.bitcoinj.core.Sha256Hash;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Base58 and Base58Check encoding and decoding with caller-supplied buffers, reporting failures by negative result
+ * codes instead of exceptions.<br>
+ * <br>
+ * Decoding accumulates the number in 32-bit limbs, so each input character costs one multiply-add per limb instead
+ * of per byte. Encoding accumulates it in limbs of base 58^5, three input bytes per multiply-add, and each limb is
+ * then split into five characters by a table of character pairs.
+ */
+public class Base58Codec {
+
+    public static final String ALPHABET = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz";
+
+    public static final int INVALID_CHARACTER = -1;
+    public static final int BUFFER_TOO_SMALL = -2;
+    public static final int TOO_SHORT = -3;
+    public static final int INVALID_CHECKSUM = -4;
+
+    private static final int LIMB_BASE = 58 * 58 * 58 * 58 * 58; // fits 30 bits, so limb * 2^24 fits a long
+
+    private static final byte[] INDEXES = new byte[128];
+    private static final char[] PAIRS = new char[58 * 58 * 2]; // two characters of each value 0 - 58^2-1
+
+    static {
+        Arrays.fill(INDEXES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            INDEXES[ALPHABET.charAt(i)] = (byte) i;
+        }
+        for (int i = 0; i < 58 * 58; i++) {
+            PAIRS[2 * i] = ALPHABET.charAt(i / 58);
+            PAIRS[2 * i + 1] = ALPHABET.charAt(i % 58);
+        }
+    }
+
+    /**
+     * @param length number of bytes to be encoded
+     * @return max number of characters of the encoded bytes
+     */
+    public static int maxEncodedLength(int length) {
+        return length * 138 / 100 + 1; // log(256) / log(58) = 1.3657
+    }
+
+    /**
+     * @param length number of bytes to be encoded
+     * @return number of limbs needed to encode the bytes
+     */
+    public static int limbsLength(int length) {
+        return length * 8 / 29 + 2; // log(58^5) / log(2) = 29.29
+    }
+
+    /**
+     * Encode bytes to Base58.
+     *
+     * @param input     bytes to be encoded
+     * @param offset    position of the first byte
+     * @param length    number of bytes
+     * @param out       buffer to write the characters to
+     * @param outOffset position in the buffer where the first character is written
+     * @param limbs     working memory, at least {@link #limbsLength(int)} ints
+     * @return number of written characters, or {@link #BUFFER_TOO_SMALL}
+     */
+    public static int encode(byte[] input, int offset, int length, char[] out, int outOffset, int[] limbs) {
+        int zeros = 0;
+        while (zeros < length && input[offset + zeros] == 0) {
+            zeros++;
+        }
+
+        int used = 0;
+        int i = offset + zeros;
+        int end = offset + length;
+        while (i < end) {
+            // up to three bytes at once
+            int bytes = Math.min(3, end - i);
+            long carry = 0;
+            for (int b = 0; b < bytes; b++) {
+                carry = (carry << 8) | (input[i++] & 0xff);
+            }
+            int shift = bytes * 8;
+            for (int j = 0; j < used; j++) {
+                long v = ((long) limbs[j] << shift) + carry;
+                limbs[j] = (int) (v % LIMB_BASE);
+                carry = v / LIMB_BASE;
+            }
+            while (carry != 0) {
+                limbs[used++] = (int) (carry % LIMB_BASE);
+                carry /= LIMB_BASE;
+            }
+        }
+
+        int topDigits = 0; // significant characters of the most significant limb
+        if (used > 0) {
+            for (int top = limbs[used - 1]; top != 0; top /= 58) {
+                topDigits++;
+            }
+        }
+        int total = zeros + (used == 0 ? 0 : (used - 1) * 5 + topDigits);
+        if (outOffset < 0 || total > out.length - outOffset) {
+            return BUFFER_TOO_SMALL;
+        }
+
+        int p = outOffset + total;
+        for (int j = 0; j < used - 1; j++) {
+            int limb = limbs[j];
+            int pair = limb % (58 * 58) * 2;
+            out[--p] = PAIRS[pair + 1];
+            out[--p] = PAIRS[pair];
+            limb /= 58 * 58;
+            pair = limb % (58 * 58) * 2;
+            out[--p] = PAIRS[pair + 1];
+            out[--p] = PAIRS[pair];
+            out[--p] = ALPHABET.charAt(limb / (58 * 58));
+        }
+        if (used > 0) {
+            for (int limb = limbs[used - 1]; limb != 0; limb /= 58) {
+                out[--p] = ALPHABET.charAt(limb % 58);
+            }
+        }
+        Arrays.fill(out, outOffset, p, '1');
+        return total;
+    }
+
+    /**
+     * Encode data to Base58Check - the checksum (first 4 bytes of double SHA-256) is appended to the data in place.
+     *
+     * @param data      version and payload, from position 0, with room for 32 more bytes after them
+     * @param length    length of version and payload
+     * @param sha256    SHA-256 digest to compute the checksum with
+     * @param out       buffer to write the characters to
+     * @param outOffset position in the buffer where the first character is written
+     * @param limbs     working memory, at least {@link #limbsLength(int)} of length + 4 ints
+     * @return number of written characters, or {@link #BUFFER_TOO_SMALL}
+     */
+    public static int encodeChecked(byte[] data, int length, MessageDigest sha256, char[] out, int outOffset, int[] limbs) {
+        if (data.length < length + 32) {
+            return BUFFER_TOO_SMALL;
+        }
+        try {
+            sha256.reset();
+            sha256.update(data, 0, length);
+            sha256.digest(data, length, 32);
+            sha256.update(data, length, 32);
+            sha256.digest(data, length, 32);
+        } catch (DigestException ex) {
+            throw new IllegalStateException(ex); // cannot happen, the room is checked
+        }
+        return encode(data, 0, length + 4, out, outOffset, limbs);
+    }
+
+    /**
+     * Decode Base58 string.<br>
+     * <br>
+     * Input longer than {@link #maxEncodedLength(int)} of the buffer cannot fit into it, so it is rejected before
+     * any arithmetic - the cost of decoding is bounded by the buffer, not by the (untrusted) input.
+     *
+     * @param input Base58 string
+     * @param out   buffer to write the decoded bytes to, from position 0
+     * @return number of decoded bytes, or {@link #INVALID_CHARACTER} or {@link #BUFFER_TOO_SMALL}
+     */
+    public static int decode(CharSequence input, byte[] out) {
+        int length = input.length();
+        if (length > maxEncodedLength(out.length)) {
+            return BUFFER_TOO_SMALL;
+        }
+        int zeros = 0;
+        while (zeros < length && input.charAt(zeros) == '1') {
+            zeros++;
+        }
+
+        // log(58) / log(2^32) = 0.18306 limbs per character, rounded up
+        int[] limbs = new int[(int) ((long) (length - zeros) * 1831 / 10000) + 1];
+        int used = 0;
+        for (int i = zeros; i < length; i++) {
+            char c = input.charAt(i);
+            int digit = c < 128 ? INDEXES[c] : -1;
+            if (digit < 0) {
+                return INVALID_CHARACTER;
+            }
+            long carry = digit;
+            for (int j = 0; j < used; j++) {
+                long v = (limbs[j] & 0xffffffffL) * 58 + carry;
+                limbs[j] = (int) v;
+                carry = v >>> 32;
+            }
+            if (carry != 0) {
+                limbs[used++] = (int) carry;
+            }
+        }
+
+        int topBytes = 0; // significant bytes of the most significant limb
+        if (used > 0) {
+            topBytes = (39 - Integer.numberOfLeadingZeros(limbs[used - 1])) >>> 3;
+        }
+        int total = zeros + (used == 0 ? 0 : (used - 1) * 4 + topBytes);
+        if (total > out.length) {
+            return BUFFER_TOO_SMALL;
+        }
+
+        Arrays.fill(out, 0, zeros, (byte) 0);
+        int p = total;
+        for (int j = 0; j < used; j++) {
+            int limb = limbs[j];
+            int bytes = j == used - 1 ? topBytes : 4;
+            for (int b = 0; b < bytes; b++) {
+                out[--p] = (byte) limb;
+                limb >>>= 8;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Decode Base58Check string and verify its checksum (first 4 bytes of double SHA-256).
+     *
+     * @param input Base58Check string
+     * @param out   buffer to write the decoded bytes to, from position 0 - it must have room for the checksum too
+     * @return number of decoded bytes without the checksum, or {@link #INVALID_CHARACTER}, {@link #BUFFER_TOO_SMALL},
+     * {@link #TOO_SHORT} or {@link #INVALID_CHECKSUM}
+     */
+    public static int decodeChecked(CharSequence input, byte[] out) {
+        int length = decode(input, out);
+        if (length < 0) {
+            return length;
+        }
+        if (length < 4) {
+            return TOO_SHORT;
+        }
+        byte[] checksum = Sha256Hash.hashTwice(out, 0, length - 4);
+        for (int i = 0; i < 4; i++) {
+            if (checksum[i] != out[length - 4 + i]) {
+                return INVALID_CHECKSUM;
+            }
+        }
+        return length - 4;
+    }
+
+}
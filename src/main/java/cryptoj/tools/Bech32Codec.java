@@ -0,0 +1,294 @@
+package cryptoj.tools;
+
+import java.util.Arrays;
+
+/**
+ * Bech32 and Bech32m encoding and decoding with caller-supplied buffers, reporting failures by negative result
+ * codes instead of exceptions.<br>
+ * <br>
+ * The checksum (BCH code polymod) is computed with a precomputed table of the generator combinations, one lookup
+ * per character instead of five conditional xors.<br>
+ * Ref: BIP 173 - https://github.com/bitcoin/bips/blob/master/bip-0173.mediawiki<br>
+ * Ref: BIP 350 - https://github.com/bitcoin/bips/blob/master/bip-0350.mediawiki
+ */
+public class Bech32Codec {
+
+    public static final String CHARSET = "qpzry9x8gf2tvdw0s3jn54khce6mua7l";
+
+    public static final int BECH32 = 1;
+    public static final int BECH32M = 2;
+
+    public static final int INVALID_LENGTH = -1;
+    public static final int INVALID_CHARACTER = -2;
+    public static final int MISSING_SEPARATOR = -3;
+    public static final int INVALID_CHECKSUM = -4;
+    public static final int BUFFER_TOO_SMALL = -5;
+
+    public static final int MAX_LENGTH = 90;
+    public static final int CHECKSUM_LENGTH = 6;
+
+    private static final int BECH32M_CONSTANT = 0x2bc830a3;
+    private static final int[] GENERATOR = {0x3b6a57b2, 0x26508e6d, 0x1ea119fa, 0x3d4233dd, 0x2a1462b3};
+    private static final int[] POLYMOD_TABLE = new int[32];
+    private static final char[] CHARSET_CHARS = CHARSET.toCharArray();
+    private static final byte[] CHARSET_REV = new byte[128];
+
+    static {
+        for (int c0 = 0; c0 < 32; c0++) {
+            int value = 0;
+            for (int bit = 0; bit < 5; bit++) {
+                if ((c0 & (1 << bit)) != 0) {
+                    value ^= GENERATOR[bit];
+                }
+            }
+            POLYMOD_TABLE[c0] = value;
+        }
+        Arrays.fill(CHARSET_REV, (byte) -1);
+        for (int i = 0; i < CHARSET.length(); i++) {
+            CHARSET_REV[CHARSET.charAt(i)] = (byte) i;
+            CHARSET_REV[Character.toUpperCase(CHARSET.charAt(i))] = (byte) i;
+        }
+    }
+
+    /**
+     * Decode Bech32 or Bech32m string. The human-readable part is not returned, compare it by
+     * {@link #hrpEquals(CharSequence, String)}.
+     *
+     * @param input  Bech32 string
+     * @param values buffer to write the 5-bit values of the data part (without the checksum) to, from position 0
+     * @return (encoding &lt;&lt; 8) | number of values, where encoding is {@link #BECH32} or {@link #BECH32M},
+     * or negative result code
+     */
+    public static int decode(CharSequence input, byte[] values) {
+        int length = input.length();
+        if (length < 8 || length > MAX_LENGTH) {
+            return INVALID_LENGTH;
+        }
+
+        boolean lower = false;
+        boolean upper = false;
+        int separator = -1;
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+            if (c < 33 || c > 126) {
+                return INVALID_CHARACTER;
+            }
+            if (c >= 'a' && c <= 'z') {
+                lower = true;
+            } else if (c >= 'A' && c <= 'Z') {
+                upper = true;
+            } else if (c == '1') {
+                separator = i;
+            }
+        }
+        if (lower && upper) {
+            return INVALID_CHARACTER;
+        }
+        if (separator < 1) {
+            return MISSING_SEPARATOR;
+        }
+        int dataLength = length - 1 - separator;
+        if (dataLength < CHECKSUM_LENGTH) {
+            return INVALID_LENGTH;
+        }
+        if (dataLength - CHECKSUM_LENGTH > values.length) {
+            return BUFFER_TOO_SMALL;
+        }
+
+        // checksum over the expanded human-readable part and the data part
+        int chk = 1;
+        for (int i = 0; i < separator; i++) {
+            chk = polymodStep(chk, Character.toLowerCase(input.charAt(i)) >>> 5);
+        }
+        chk = polymodStep(chk, 0);
+        for (int i = 0; i < separator; i++) {
+            chk = polymodStep(chk, Character.toLowerCase(input.charAt(i)) & 31);
+        }
+        for (int i = 0; i < dataLength; i++) {
+            int value = CHARSET_REV[input.charAt(separator + 1 + i)];
+            if (value < 0) {
+                return INVALID_CHARACTER;
+            }
+            chk = polymodStep(chk, value);
+            if (i < dataLength - CHECKSUM_LENGTH) {
+                values[i] = (byte) value;
+            }
+        }
+
+        int encoding;
+        if (chk == 1) {
+            encoding = BECH32;
+        } else if (chk == BECH32M_CONSTANT) {
+            encoding = BECH32M;
+        } else {
+            return INVALID_CHECKSUM;
+        }
+        return (encoding << 8) | (dataLength - CHECKSUM_LENGTH);
+    }
+
+    /**
+     * Encode Bech32 or Bech32m string.
+     *
+     * @param hrp       human-readable part in lower case
+     * @param encoding  {@link #BECH32} or {@link #BECH32M}
+     * @param values    5-bit values of the data part, from position 0
+     * @param length    number of values
+     * @param out       buffer to write the characters to
+     * @param outOffset position in the buffer where the first character is written
+     * @return number of written characters, or {@link #INVALID_LENGTH} or {@link #BUFFER_TOO_SMALL}
+     */
+    public static int encode(String hrp, int encoding, byte[] values, int length, char[] out, int outOffset) {
+        int hrpLength = hrp.length();
+        int total = hrpLength + 1 + length + CHECKSUM_LENGTH;
+        if (hrpLength < 1 || total > MAX_LENGTH) {
+            return INVALID_LENGTH;
+        }
+        if (outOffset < 0 || total > out.length - outOffset) {
+            return BUFFER_TOO_SMALL;
+        }
+
+        int chk = 1;
+        int p = outOffset;
+        for (int i = 0; i < hrpLength; i++) {
+            char c = hrp.charAt(i);
+            chk = polymodStep(chk, c >>> 5);
+            out[p++] = c;
+        }
+        out[p++] = '1';
+        chk = polymodStep(chk, 0);
+        for (int i = 0; i < hrpLength; i++) {
+            chk = polymodStep(chk, hrp.charAt(i) & 31);
+        }
+        for (int i = 0; i < length; i++) {
+            chk = polymodStep(chk, values[i]);
+            out[p++] = CHARSET_CHARS[values[i]];
+        }
+        for (int i = 0; i < CHECKSUM_LENGTH; i++) {
+            chk = polymodStep(chk, 0);
+        }
+        chk ^= encoding == BECH32 ? 1 : BECH32M_CONSTANT;
+        for (int i = 0; i < CHECKSUM_LENGTH; i++) {
+            out[p++] = CHARSET_CHARS[(chk >>> (5 * (CHECKSUM_LENGTH - 1 - i))) & 31];
+        }
+        return total;
+    }
+
+    /**
+     * Encode segwit address - witness version and witness program. Witness version 0 is encoded as Bech32,
+     * the others as Bech32m.
+     *
+     * @param hrp            human-readable part in lower case
+     * @param witnessVersion witness version 0 - 16
+     * @param program        witness program
+     * @param offset         position of the first byte of the program
+     * @param length         length of the program
+     * @param values         working memory, at least 1 + (length * 8 + 4) / 5 bytes
+     * @param out            buffer to write the characters to
+     * @param outOffset      position in the buffer where the first character is written
+     * @return number of written characters, or {@link #INVALID_LENGTH} or {@link #BUFFER_TOO_SMALL}
+     */
+    public static int encodeSegwit(String hrp, int witnessVersion, byte[] program, int offset, int length,
+                                   byte[] values, char[] out, int outOffset) {
+        if (values.length < 1) {
+            return BUFFER_TOO_SMALL;
+        }
+        values[0] = (byte) witnessVersion;
+        int valuesLength = convert8To5(program, offset, length, values, 1);
+        if (valuesLength < 0) {
+            return valuesLength;
+        }
+        return encode(hrp, witnessVersion == 0 ? BECH32 : BECH32M, values, 1 + valuesLength, out, outOffset);
+    }
+
+    /**
+     * Compare the human-readable part of Bech32 string (before the last '1') with the expected one, ignoring case.
+     *
+     * @param input Bech32 string
+     * @param hrp   expected human-readable part in lower case
+     * @return true if they are equal
+     */
+    public static boolean hrpEquals(CharSequence input, String hrp) {
+        int length = hrp.length();
+        if (input.length() <= length || input.charAt(length) != '1') {
+            return false;
+        }
+        for (int i = length + 1; i < input.length(); i++) {
+            if (input.charAt(i) == '1') {
+                return false; // the separator is the last '1'
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            if (Character.toLowerCase(input.charAt(i)) != hrp.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Regroup 5-bit values into bytes, without padding - leftover bits must be fewer than 5 and zero.
+     *
+     * @param values 5-bit values
+     * @param offset position of the first value
+     * @param length number of values
+     * @param out    buffer to write the bytes to, from position 0
+     * @return number of bytes, or {@link #INVALID_LENGTH} if the padding is invalid or {@link #BUFFER_TOO_SMALL}
+     */
+    public static int convert5To8(byte[] values, int offset, int length, byte[] out) {
+        int acc = 0;
+        int bits = 0;
+        int p = 0;
+        for (int i = 0; i < length; i++) {
+            acc = (acc << 5) | values[offset + i];
+            bits += 5;
+            if (bits >= 8) {
+                bits -= 8;
+                if (p == out.length) {
+                    return BUFFER_TOO_SMALL;
+                }
+                out[p++] = (byte) (acc >>> bits);
+            }
+        }
+        if (bits >= 5 || ((acc << (8 - bits)) & 0xff) != 0) {
+            return INVALID_LENGTH;
+        }
+        return p;
+    }
+
+    /**
+     * Regroup bytes into 5-bit values, the last value is padded with zero bits.
+     *
+     * @param data         bytes
+     * @param offset       position of the first byte
+     * @param length       number of bytes
+     * @param values       buffer to write the 5-bit values to
+     * @param valuesOffset position in the buffer where the first value is written
+     * @return number of values, or {@link #BUFFER_TOO_SMALL}
+     */
+    public static int convert8To5(byte[] data, int offset, int length, byte[] values, int valuesOffset) {
+        int count = (length * 8 + 4) / 5;
+        if (valuesOffset < 0 || count > values.length - valuesOffset) {
+            return BUFFER_TOO_SMALL;
+        }
+        int acc = 0;
+        int bits = 0;
+        int p = valuesOffset;
+        for (int i = 0; i < length; i++) {
+            acc = (acc << 8) | (data[offset + i] & 0xff);
+            bits += 8;
+            while (bits >= 5) {
+                bits -= 5;
+                values[p++] = (byte) ((acc >>> bits) & 31);
+            }
+        }
+        if (bits > 0) {
+            values[p++] = (byte) ((acc << (5 - bits)) & 31);
+        }
+        return count;
+    }
+
+    private static int polymodStep(int chk, int value) {
+        return ((chk & 0x1ffffff) << 5) ^ value ^ POLYMOD_TABLE[chk >>> 25];
+    }
+
+}
@@ -0,0 +1,130 @@
+package cryptoj.tools;
+
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Entropy source with one DRBG (NIST SP 800-90A, SecureRandom "DRBG" of the JDK) per thread.<br>
+ * <br>
+ * Each thread seeds its generator once from the OS entropy source and then generates bytes without any lock
+ * or blocking read, so throughput scales with threads. A generator is reseeded from the OS entropy source after
+ * a number of generated bytes or after a period of time, whichever comes first.
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class DrbgEntropySource implements EntropySource {
+
+    public static final long DEFAULT_RESEED_INTERVAL_BYTES = 1L << 20;
+    public static final long DEFAULT_RESEED_INTERVAL_MILLIS = 10 * 60 * 1000L;
+
+    private static final int CHUNK_LENGTH = 256;
+
+    @Getter
+    long reseedIntervalBytes;
+    @Getter
+    long reseedIntervalMillis;
+    long reseedIntervalNanos;
+    AtomicLong reseedCount = new AtomicLong();
+    ThreadLocal<Generator> generators = ThreadLocal.withInitial(Generator::new);
+
+    /**
+     * Entropy source with the default reseed intervals (1 MiB, 10 minutes).
+     */
+    public DrbgEntropySource() {
+        this(DEFAULT_RESEED_INTERVAL_BYTES, DEFAULT_RESEED_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Entropy source with custom reseed intervals.
+     *
+     * @param reseedIntervalBytes  number of bytes a generator generates before it is reseeded
+     * @param reseedIntervalMillis time in milliseconds after which a generator is reseeded
+     */
+    public DrbgEntropySource(
+            long reseedIntervalBytes,
+            long reseedIntervalMillis
+    ) {
+        if (reseedIntervalBytes < 1) {
+            throw new IllegalArgumentException("Reseed interval must be at least 1 byte.");
+        }
+        if (reseedIntervalMillis < 1) {
+            throw new IllegalArgumentException("Reseed interval must be at least 1 ms.");
+        }
+        this.reseedIntervalBytes = reseedIntervalBytes;
+        this.reseedIntervalMillis = reseedIntervalMillis;
+        this.reseedIntervalNanos = TimeUnit.MILLISECONDS.toNanos(reseedIntervalMillis);
+    }
+
+    @Override
+    public void nextBytes(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > bytes.length - length) {
+            throw new IndexOutOfBoundsException("Invalid offset or length.");
+        }
+        Generator generator = generators.get();
+        if (offset == 0 && length == bytes.length) {
+            generator.random(this, length).nextBytes(bytes);
+            return;
+        }
+        for (int done = 0; done < length; ) {
+            int size = Math.min(CHUNK_LENGTH, length - done);
+            generator.random(this, size).nextBytes(generator.chunk);
+            System.arraycopy(generator.chunk, 0, bytes, offset + done, size);
+            done += size;
+        }
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return generators.get().random(this, 4).nextInt(bound);
+    }
+
+    /**
+     * @return number of reseeds of all the generators so far
+     */
+    public long getReseedCount() {
+        return reseedCount.get();
+    }
+
+    /**
+     * DRBG of one thread.
+     */
+    @FieldDefaults(level = PRIVATE)
+    private static class Generator {
+
+        final SecureRandom random;
+        final byte[] chunk = new byte[CHUNK_LENGTH];
+        long generatedBytes;
+        long seededAt = System.nanoTime();
+
+        Generator() {
+            try {
+                random = SecureRandom.getInstance("DRBG");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("DRBG algorithm is not supported", e);
+            }
+        }
+
+        /**
+         * @return the generator, reseeded first if the next bytes would exceed an interval
+         */
+        SecureRandom random(DrbgEntropySource source, int length) {
+            generatedBytes += length;
+            if (generatedBytes > source.reseedIntervalBytes
+                    || System.nanoTime() - seededAt > source.reseedIntervalNanos) {
+                random.reseed();
+                source.reseedCount.incrementAndGet();
+                generatedBytes = length;
+                seededAt = System.nanoTime();
+            }
+            return random;
+        }
+
+    }
+
+}
@@ -0,0 +1,49 @@
+package cryptoj.tools;
+
+/**
+ * Source of cryptographically secure random bytes for all randomness of CryptoJ - mnemonics, ephemeral keys,
+ * random strings and salts. The default one is {@link DrbgEntropySource}, another one can be plugged in by
+ * CryptoJ.setEntropySource(..), e.g. a hardware RNG. Implementations must be thread-safe.
+ */
+public interface EntropySource {
+
+    /**
+     * Fill a part of the array with random bytes.
+     *
+     * @param bytes  array to fill
+     * @param offset position of the first byte to fill
+     * @param length number of bytes to fill
+     */
+    void nextBytes(byte[] bytes, int offset, int length);
+
+    /**
+     * Fill the array with random bytes.
+     *
+     * @param bytes array to fill
+     */
+    default void nextBytes(byte[] bytes) {
+        nextBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Uniformly distributed random int.
+     *
+     * @param bound upper bound (exclusive), must be positive
+     * @return random int between 0 (inclusive) and bound (exclusive)
+     */
+    default int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive.");
+        }
+        byte[] bytes = new byte[4];
+        int limit = Integer.MAX_VALUE - Integer.MAX_VALUE % bound; // reject the biased tail
+        while (true) {
+            nextBytes(bytes);
+            int value = ((bytes[0] & 0x7f) << 24) | ((bytes[1] & 0xff) << 16) | ((bytes[2] & 0xff) << 8) | (bytes[3] & 0xff);
+            if (value < limit) {
+                return value % bound;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package cryptoj.tools;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Durable file replacement for files which are written to a temporary file first.<br>
+ * <br>
+ * A rename is an update of the directory, so it survives a crash only once the directory itself is forced.
+ */
+public class FileTools {
+
+    /**
+     * Atomically replace the file by the fully written and forced temporary file, and force the directory.
+     *
+     * @param tmp  temporary file
+     * @param file target file, replaced if it exists
+     * @return target file
+     * @throws IOException if the file cannot be moved
+     */
+    public static Path moveDurably(
+            @NonNull Path tmp,
+            @NonNull Path file
+    ) throws IOException {
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(file.toAbsolutePath().getParent());
+        return file;
+    }
+
+    /**
+     * Force renames, creations and deletions of files in the directory to disk. It is skipped on platforms which
+     * cannot open a directory (e.g. Windows).
+     *
+     * @param directory directory
+     */
+    public static void forceDirectory(
+            @NonNull Path directory
+    ) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            // not supported by the platform
+        }
+    }
+
+}
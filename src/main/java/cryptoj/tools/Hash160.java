@@ -0,0 +1,176 @@
+package cryptoj.tools;
+
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import org.bitcoinj.core.Sha256Hash;
+import org.bouncycastle.crypto.digests.RIPEMD160Digest;
+
+import java.lang.reflect.Constructor;
+import java.security.DigestException;
+import java.security.MessageDigest;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Reusable hash160 (RIPEMD-160 of SHA-256) engine for bulk hashing of public keys.<br>
+ * <br>
+ * Both digests are created once and the intermediate SHA-256 hash is kept in the instance, so hashing a message
+ * writes straight into the caller's buffer without any allocation. SHA-256 is the JDK implementation, which the JVM
+ * replaces with the SHA instructions of the CPU where available. The instance is not thread-safe, use one per thread.<br>
+ * <br>
+ * Batches of messages are hashed lane-parallel - several messages per SIMD vector - when the jdk.incubator.vector
+ * module is resolved (run with --add-modules jdk.incubator.vector), otherwise one by one.
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class Hash160 {
+
+    public static final int HASH_LENGTH = 20;
+
+    private static final Constructor<? extends Lanes> LANES = loadLanes();
+
+    MessageDigest sha256 = Sha256Hash.newDigest();
+    RIPEMD160Digest ripemd160 = new RIPEMD160Digest();
+    byte[] intermediate = new byte[32];
+    @NonFinal
+    Lanes lanes;
+
+    /**
+     * Compute hash160 of the message.
+     *
+     * @param input     message
+     * @param offset    position of the first byte of the message
+     * @param length    length of the message
+     * @param out       buffer to write the 20 bytes long hash to
+     * @param outOffset position in the buffer where the hash is written
+     */
+    public void hash160(byte[] input, int offset, int length, byte[] out, int outOffset) {
+        sha256.update(input, offset, length);
+        try {
+            sha256.digest(intermediate, 0, 32);
+        } catch (DigestException ex) {
+            throw new IllegalStateException(ex); // cannot happen, the buffer is 32 bytes long
+        }
+        ripemd160.update(intermediate, 0, 32);
+        ripemd160.doFinal(out, outOffset);
+    }
+
+    /**
+     * Compute hash160 of the message.
+     *
+     * @param input message
+     * @return 20 bytes long hash
+     */
+    public byte[] hash160(byte[] input) {
+        byte[] out = new byte[HASH_LENGTH];
+        hash160(input, 0, input.length, out, 0);
+        return out;
+    }
+
+    /**
+     * Compute hash160 of a batch of messages.
+     *
+     * @param inputs messages
+     * @param out    buffer to write the 20 bytes long hashes to, the hash of inputs[i] starts at 20 * i
+     */
+    public void hash160(@NonNull byte[][] inputs, @NonNull byte[] out) {
+        hash160(inputs, inputs.length, out, 0);
+    }
+
+    /**
+     * Compute hash160 of a batch of messages. Consecutive messages of the same number of SHA-256 blocks (e.g.
+     * public keys of the same encoding) are hashed lane-parallel if the lane engine is available.
+     *
+     * @param inputs    messages
+     * @param count     number of messages to hash, from inputs[0]
+     * @param out       buffer to write the 20 bytes long hashes to
+     * @param outOffset position in the buffer where the hash of inputs[0] is written, the hash of inputs[i] starts
+     *                  at outOffset + 20 * i
+     */
+    public void hash160(@NonNull byte[][] inputs, int count, @NonNull byte[] out, int outOffset) {
+        if (count < 0 || count > inputs.length) {
+            throw new IllegalArgumentException("Invalid number of messages.");
+        }
+        if (outOffset < 0 || outOffset > out.length - (long) count * HASH_LENGTH) {
+            throw new IllegalArgumentException("Invalid output buffer offset.");
+        }
+
+        int i = 0;
+        if (LANES != null) {
+            if (lanes == null) {
+                lanes = newLanes(LANES);
+            }
+            int width = lanes.width();
+            for (; i + width <= count; i += width) {
+                if (lanes.hash160(inputs, i, out, outOffset + i * HASH_LENGTH) == false) {
+                    for (int j = i; j < i + width; j++) {
+                        hash160(inputs[j], 0, inputs[j].length, out, outOffset + j * HASH_LENGTH);
+                    }
+                }
+            }
+        }
+        for (; i < count; i++) {
+            hash160(inputs[i], 0, inputs[i].length, out, outOffset + i * HASH_LENGTH);
+        }
+    }
+
+    /**
+     * Number of messages hashed at once by the batch methods - 1 without the lane engine.
+     *
+     * @return number of lanes
+     */
+    public static int lanes() {
+        return LANES == null ? 1 : newLanes(LANES).width();
+    }
+
+    /**
+     * Lane engine on the Vector API, or null if the jdk.incubator.vector module is not resolved or the CPU has
+     * less than 4 int lanes. The engine class is loaded reflectively, so the library neither compiles against nor
+     * requires the incubator module at runtime.
+     */
+    private static Constructor<? extends Lanes> loadLanes() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            Constructor<? extends Lanes> constructor = Class.forName("cryptoj.tools.VectorHash160")
+                    .asSubclass(Lanes.class)
+                    .getDeclaredConstructor();
+            return constructor.newInstance().width() >= 4 ? constructor : null;
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private static Lanes newLanes(Constructor<? extends Lanes> constructor) {
+        try {
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex); // cannot happen, the constructor has been probed
+        }
+    }
+
+    /**
+     * Lane-parallel hash160 of a fixed number of messages.
+     */
+    interface Lanes {
+
+        /**
+         * @return number of messages hashed at once
+         */
+        int width();
+
+        /**
+         * Compute hash160 of width consecutive messages.
+         *
+         * @param inputs    messages
+         * @param from      position of the first message
+         * @param out       buffer to write the hashes to
+         * @param outOffset position in the buffer where the hash of the first message is written
+         * @return false (and nothing written) if the messages differ in the number of SHA-256 blocks
+         */
+        boolean hash160(byte[][] inputs, int from, byte[] out, int outOffset);
+
+    }
+
+}
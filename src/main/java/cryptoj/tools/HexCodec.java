@@ -0,0 +1,103 @@
+package cryptoj.tools;
+
+import java.util.Arrays;
+
+/**
+ * Hexadecimal encoding and decoding with caller-supplied buffers, reporting failures by negative result codes
+ * instead of exceptions.<br>
+ * <br>
+ * Both directions are table-driven - one lookup of the two characters per encoded byte and one lookup per decoded
+ * character, instead of formatting or parsing every digit separately.
+ */
+public class HexCodec {
+
+    public static final int INVALID_CHARACTER = -1;
+    public static final int INVALID_LENGTH = -2;
+    public static final int BUFFER_TOO_SMALL = -3;
+
+    private static final String DIGITS = "0123456789abcdef";
+
+    private static final char[] BYTE_CHARS = new char[512]; // two characters of each byte value
+    private static final byte[] NIBBLES = new byte[128];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            BYTE_CHARS[2 * i] = DIGITS.charAt(i >>> 4);
+            BYTE_CHARS[2 * i + 1] = DIGITS.charAt(i & 15);
+        }
+        Arrays.fill(NIBBLES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            NIBBLES[DIGITS.charAt(i)] = (byte) i;
+            NIBBLES[Character.toUpperCase(DIGITS.charAt(i))] = (byte) i;
+        }
+    }
+
+    /**
+     * Encode bytes to lower case hexadecimal string.
+     *
+     * @param input bytes to be encoded
+     * @return hexadecimal string, without any prefix
+     */
+    public static String encode(byte[] input) {
+        char[] out = new char[input.length * 2];
+        encode(input, 0, input.length, out, 0);
+        return new String(out);
+    }
+
+    /**
+     * Encode bytes to lower case hexadecimal characters.
+     *
+     * @param input     bytes to be encoded
+     * @param offset    position of the first byte
+     * @param length    number of bytes
+     * @param out       buffer to write the characters to
+     * @param outOffset position in the buffer where the first character is written
+     * @return number of written characters, or {@link #BUFFER_TOO_SMALL}
+     */
+    public static int encode(byte[] input, int offset, int length, char[] out, int outOffset) {
+        if (outOffset < 0 || length * 2 > out.length - outOffset) {
+            return BUFFER_TOO_SMALL;
+        }
+        int p = outOffset;
+        for (int i = offset; i < offset + length; i++) {
+            int index = (input[i] & 0xff) << 1;
+            out[p++] = BYTE_CHARS[index];
+            out[p++] = BYTE_CHARS[index + 1];
+        }
+        return length * 2;
+    }
+
+    /**
+     * Decode hexadecimal characters (either case) to bytes.
+     *
+     * @param input     hexadecimal string
+     * @param offset    position of the first character
+     * @param length    number of characters
+     * @param out       buffer to write the bytes to
+     * @param outOffset position in the buffer where the first byte is written
+     * @return number of decoded bytes, or {@link #INVALID_CHARACTER}, {@link #INVALID_LENGTH} or
+     * {@link #BUFFER_TOO_SMALL}
+     */
+    public static int decode(CharSequence input, int offset, int length, byte[] out, int outOffset) {
+        if ((length & 1) != 0) {
+            return INVALID_LENGTH;
+        }
+        if (outOffset < 0 || length / 2 > out.length - outOffset) {
+            return BUFFER_TOO_SMALL;
+        }
+        int p = outOffset;
+        for (int i = offset; i < offset + length; i += 2) {
+            char hi = input.charAt(i);
+            char lo = input.charAt(i + 1);
+            // characters >= 128 are mapped to index 0 ('\0'), which is not a hexadecimal digit
+            int h = NIBBLES[hi < 128 ? hi : 0];
+            int l = NIBBLES[lo < 128 ? lo : 0];
+            if ((h | l) < 0) {
+                return INVALID_CHARACTER;
+            }
+            out[p++] = (byte) ((h << 4) | l);
+        }
+        return length / 2;
+    }
+
+}
@@ -0,0 +1,275 @@
+package cryptoj.tools;
+
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * HMAC-SHA512 with precomputed inner and outer pad states.<br>
+ * <br>
+ * The key is absorbed only once, when the instance is created, so every MAC computation costs just
+ * the compressions of the message blocks plus one compression of the outer hash. SHA-512 runs on
+ * long[] state, and the instance is immutable, so it can be shared between threads.
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class HmacSha512 {
+
+    public static final int BLOCK_LENGTH = 128;
+    public static final int MAC_LENGTH = 64;
+
+    private static final long[] IV = {
+            0x6a09e667f3bcc908L, 0xbb67ae8584caa73bL, 0x3c6ef372fe94f82bL, 0xa54ff53a5f1d36f1L,
+            0x510e527fade682d1L, 0x9b05688c2b3e6c1fL, 0x1f83d9abfb41bd6bL, 0x5be0cd19137e2179L
+    };
+
+    private static final long[] K = {
+            0x428a2f98d728ae22L, 0x7137449123ef65cdL, 0xb5c0fbcfec4d3b2fL, 0xe9b5dba58189dbbcL,
+            0x3956c25bf348b538L, 0x59f111f1b605d019L, 0x923f82a4af194f9bL, 0xab1c5ed5da6d8118L,
+            0xd807aa98a3030242L, 0x12835b0145706fbeL, 0x243185be4ee4b28cL, 0x550c7dc3d5ffb4e2L,
+            0x72be5d74f27b896fL, 0x80deb1fe3b1696b1L, 0x9bdc06a725c71235L, 0xc19bf174cf692694L,
+            0xe49b69c19ef14ad2L, 0xefbe4786384f25e3L, 0x0fc19dc68b8cd5b5L, 0x240ca1cc77ac9c65L,
+            0x2de92c6f592b0275L, 0x4a7484aa6ea6e483L, 0x5cb0a9dcbd41fbd4L, 0x76f988da831153b5L,
+            0x983e5152ee66dfabL, 0xa831c66d2db43210L, 0xb00327c898fb213fL, 0xbf597fc7beef0ee4L,
+            0xc6e00bf33da88fc2L, 0xd5a79147930aa725L, 0x06ca6351e003826fL, 0x142929670a0e6e70L,
+            0x27b70a8546d22ffcL, 0x2e1b21385c26c926L, 0x4d2c6dfc5ac42aedL, 0x53380d139d95b3dfL,
+            0x650a73548baf63deL, 0x766a0abb3c77b2a8L, 0x81c2c92e47edaee6L, 0x92722c851482353bL,
+            0xa2bfe8a14cf10364L, 0xa81a664bbc423001L, 0xc24b8b70d0f89791L, 0xc76c51a30654be30L,
+            0xd192e819d6ef5218L, 0xd69906245565a910L, 0xf40e35855771202aL, 0x106aa07032bbd1b8L,
+            0x19a4c116b8d2d0c8L, 0x1e376c085141ab53L, 0x2748774cdf8eeb99L, 0x34b0bcb5e19b48a8L,
+            0x391c0cb3c5c95a63L, 0x4ed8aa4ae3418acbL, 0x5b9cca4f7763e373L, 0x682e6ff3d6b2b8a3L,
+            0x748f82ee5defb2fcL, 0x78a5636f43172f60L, 0x84c87814a1f0ab72L, 0x8cc702081a6439ecL,
+            0x90befffa23631e28L, 0xa4506cebde82bde9L, 0xbef9a3f7b2c67915L, 0xc67178f2e372532bL,
+            0xca273eceea26619cL, 0xd186b8c721c0c207L, 0xeada7dd6cde0eb1eL, 0xf57d4f7fee6ed178L,
+            0x06f067aa72176fbaL, 0x0a637dc5a2c898a6L, 0x113f9804bef90daeL, 0x1b710b35131c471bL,
+            0x28db77f523047d84L, 0x32caab7b40c72493L, 0x3c9ebe0a15c9bebcL, 0x431d67c49c100d4cL,
+            0x4cc5d4becb3e42b6L, 0x597f299cfc657e2aL, 0x5fcb6fab3ad6faecL, 0x6c44198c4a475817L
+    };
+
+    long[] innerState = new long[8];
+    long[] outerState = new long[8];
+
+    /**
+     * Create HMAC-SHA512 keyed by the key.
+     *
+     * @param key the key, keys longer than the block length are hashed first
+     */
+    public HmacSha512(
+            @NonNull byte[] key
+    ) {
+        if (key.length > BLOCK_LENGTH) {
+            try {
+                key = MessageDigest.getInstance("SHA-512").digest(key);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Sha-512 digest algorithm is not supported", e);
+            }
+        }
+
+        byte[] pad = new byte[BLOCK_LENGTH];
+        long[] w = new long[80];
+
+        System.arraycopy(key, 0, pad, 0, key.length);
+        for (int i = 0; i < BLOCK_LENGTH; i++) {
+            pad[i] ^= 0x36;
+        }
+        System.arraycopy(IV, 0, innerState, 0, 8);
+        loadBlock(pad, 0, w);
+        compress(innerState, w);
+
+        for (int i = 0; i < BLOCK_LENGTH; i++) {
+            pad[i] ^= 0x36 ^ 0x5c;
+        }
+        System.arraycopy(IV, 0, outerState, 0, 8);
+        loadBlock(pad, 0, w);
+        compress(outerState, w);
+
+        Arrays.fill(pad, (byte) 0);
+        Arrays.fill(w, 0L);
+    }
+
+    /**
+     * Compute MAC of a message.
+     *
+     * @param message message
+     * @return 64 bytes long MAC
+     */
+    public byte[] mac(
+            @NonNull byte[] message
+    ) {
+        byte[] out = new byte[MAC_LENGTH];
+        mac(message, 0, message.length, out, 0, new long[88]);
+        return out;
+    }
+
+    /**
+     * Compute MAC of a message into a caller-supplied buffer, without any allocation.
+     *
+     * @param message   buffer containing the message
+     * @param offset    offset of the message in the buffer
+     * @param length    length of the message
+     * @param out       buffer to write the 64 bytes long MAC to
+     * @param outOffset offset in the out buffer
+     * @param scratch   working memory, at least 88 longs, may be reused for the next call
+     */
+    public void mac(
+            byte[] message,
+            int offset,
+            int length,
+            byte[] out,
+            int outOffset,
+            long[] scratch
+    ) {
+        int s = 80; // state lives in scratch[80..87], message schedule in scratch[0..79]
+
+        // inner hash - continue from the precomputed inner pad state
+        System.arraycopy(innerState, 0, scratch, s, 8);
+        int end = offset + length;
+        int pos = offset;
+        for (; end - pos >= BLOCK_LENGTH; pos += BLOCK_LENGTH) {
+            loadBlock(message, pos, scratch);
+            compress(scratch, s, scratch);
+        }
+        int tail = end - pos;
+        Arrays.fill(scratch, 0, 16, 0L);
+        for (int i = 0; i < tail; i++) {
+            scratch[i >>> 3] |= (message[pos + i] & 0xffL) << (56 - ((i & 7) << 3));
+        }
+        scratch[tail >>> 3] |= 0x80L << (56 - ((tail & 7) << 3));
+        if (tail >= BLOCK_LENGTH - 16) { // no room for the length, it goes into an extra block
+            compress(scratch, s, scratch);
+            Arrays.fill(scratch, 0, 16, 0L);
+        }
+        scratch[15] = ((long) BLOCK_LENGTH + length) << 3;
+        compress(scratch, s, scratch);
+
+        // outer hash - continue from the precomputed outer pad state
+        for (int i = 0; i < 8; i++) {
+            scratch[i] = scratch[s + i];
+        }
+        System.arraycopy(outerState, 0, scratch, s, 8);
+        finishWords(scratch, s, scratch);
+
+        for (int i = 0; i < 8; i++) {
+            long v = scratch[s + i];
+            for (int j = 0; j < 8; j++) {
+                out[outOffset + (i << 3) + j] = (byte) (v >>> (56 - (j << 3)));
+            }
+        }
+    }
+
+    /**
+     * Compute MAC of a 64 bytes long message given as 8 big-endian words, e.g. the previous MAC.
+     * This is the inner loop of PBKDF2, it costs exactly two compressions and allocates nothing.
+     *
+     * @param in      8 words of the message
+     * @param out     8 words of the MAC, may be the same array as in
+     * @param scratch working memory, at least 88 longs
+     */
+    void macWords(
+            long[] in,
+            long[] out,
+            long[] scratch
+    ) {
+        int s = 80;
+        System.arraycopy(in, 0, scratch, 0, 8);
+        System.arraycopy(innerState, 0, scratch, s, 8);
+        finishWords(scratch, s, scratch);
+
+        for (int i = 0; i < 8; i++) {
+            scratch[i] = scratch[s + i];
+        }
+        System.arraycopy(outerState, 0, scratch, s, 8);
+        finishWords(scratch, s, scratch);
+
+        System.arraycopy(scratch, s, out, 0, 8);
+    }
+
+    /**
+     * Pad the 64 bytes long message already placed in w[0..7] as the final block after one absorbed block
+     * and compress it.
+     */
+    private static void finishWords(long[] h, int s, long[] w) {
+        w[8] = 0x8000000000000000L;
+        for (int i = 9; i < 15; i++) {
+            w[i] = 0L;
+        }
+        w[15] = (BLOCK_LENGTH + MAC_LENGTH) << 3;
+        compress(h, s, w);
+    }
+
+    static void loadBlock(byte[] block, int offset, long[] w) {
+        for (int i = 0; i < 16; i++) {
+            int p = offset + (i << 3);
+            w[i] = ((block[p] & 0xffL) << 56)
+                    | ((block[p + 1] & 0xffL) << 48)
+                    | ((block[p + 2] & 0xffL) << 40)
+                    | ((block[p + 3] & 0xffL) << 32)
+                    | ((block[p + 4] & 0xffL) << 24)
+                    | ((block[p + 5] & 0xffL) << 16)
+                    | ((block[p + 6] & 0xffL) << 8)
+                    | (block[p + 7] & 0xffL);
+        }
+    }
+
+    static void compress(long[] h, long[] w) {
+        compress(h, 0, w);
+    }
+
+    /**
+     * SHA-512 compression function.
+     *
+     * @param h state, 8 words starting at position s, updated in place
+     * @param s position of the state in h
+     * @param w message block in w[0..15], w[16..79] is used for the message schedule
+     */
+    static void compress(long[] h, int s, long[] w) {
+        for (int t = 16; t < 80; t++) {
+            long w15 = w[t - 15];
+            long w2 = w[t - 2];
+            long s0 = Long.rotateRight(w15, 1) ^ Long.rotateRight(w15, 8) ^ (w15 >>> 7);
+            long s1 = Long.rotateRight(w2, 19) ^ Long.rotateRight(w2, 61) ^ (w2 >>> 6);
+            w[t] = w[t - 16] + s0 + w[t - 7] + s1;
+        }
+
+        long a = h[s];
+        long b = h[s + 1];
+        long c = h[s + 2];
+        long d = h[s + 3];
+        long e = h[s + 4];
+        long f = h[s + 5];
+        long g = h[s + 6];
+        long hh = h[s + 7];
+
+        for (int t = 0; t < 80; t++) {
+            long t1 = hh
+                    + (Long.rotateRight(e, 14) ^ Long.rotateRight(e, 18) ^ Long.rotateRight(e, 41))
+                    + ((e & f) ^ (~e & g))
+                    + K[t]
+                    + w[t];
+            long t2 = (Long.rotateRight(a, 28) ^ Long.rotateRight(a, 34) ^ Long.rotateRight(a, 39))
+                    + ((a & b) ^ (a & c) ^ (b & c));
+            hh = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+
+        h[s] += a;
+        h[s + 1] += b;
+        h[s + 2] += c;
+        h[s + 3] += d;
+        h[s + 4] += e;
+        h[s + 5] += f;
+        h[s + 6] += g;
+        h[s + 7] += hh;
+    }
+
+}
@@ -0,0 +1,191 @@
+package cryptoj.tools;
+
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.crypto.MnemonicCode;
+import org.bitcoinj.crypto.MnemonicException;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * BIP 39 mnemonic validation which scans the mnemonic in place, without splitting it into strings.<br>
+ * <br>
+ * Words are looked up in an open-addressing hash index over the 2048 words of the English wordlist, hashed directly
+ * from the characters of the mnemonic. Their 11-bit indexes are packed into a long[], and the checksum is verified
+ * with a reused SHA-256 digest. Mnemonics of more than 24 words are rare, so they are validated by bitcoinj's
+ * {@link MnemonicCode}.<br>
+ * <br>
+ * It accepts exactly the same mnemonics as MnemonicCode.check() with words separated by single spaces.
+ * The instance is not thread-safe, use one per thread.<br>
+ * Ref: BIP 39 - https://github.com/bitcoin/bips/blob/master/bip-0039.mediawiki
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class MnemonicValidator {
+
+    private static final int MAX_WORDS = 24;
+    private static final int TABLE_SIZE = 4096; // power of two, at most half full
+
+    private static final String[] WORDS = MnemonicCode.INSTANCE.getWordList().toArray(new String[0]);
+    private static final short[] TABLE = new short[TABLE_SIZE]; // word index + 1, 0 is empty slot
+
+    private static final ThreadLocal<MnemonicValidator> VALIDATORS = ThreadLocal.withInitial(MnemonicValidator::new);
+
+    static {
+        for (int i = 0; i < WORDS.length; i++) {
+            int slot = hash(WORDS[i], 0, WORDS[i].length()) & (TABLE_SIZE - 1);
+            while (TABLE[slot] != 0) {
+                slot = (slot + 1) & (TABLE_SIZE - 1);
+            }
+            TABLE[slot] = (short) (i + 1);
+        }
+    }
+
+    long[] packed = new long[(MAX_WORDS * 11 + 63) / 64];
+    byte[] entropy = new byte[32];
+    byte[] hash = new byte[32];
+    MessageDigest sha256 = Sha256Hash.newDigest();
+
+    /**
+     * Validate mnemonic with the validator of the current thread.
+     *
+     * @param mnemonic words separated by single spaces
+     * @return true if it's valid, otherwise false
+     */
+    public static boolean validate(
+            @NonNull CharSequence mnemonic
+    ) {
+        return VALIDATORS.get().isValid(mnemonic);
+    }
+
+    /**
+     * Index of the word in the English wordlist.
+     *
+     * @param input  text containing the word
+     * @param offset position of the first character of the word
+     * @param length length of the word
+     * @return index of the word, or -1 if it is not in the wordlist
+     */
+    public static int indexOf(
+            @NonNull CharSequence input,
+            int offset,
+            int length
+    ) {
+        int slot = hash(input, offset, length) & (TABLE_SIZE - 1);
+        for (int index; (index = TABLE[slot] - 1) >= 0; slot = (slot + 1) & (TABLE_SIZE - 1)) {
+            String word = WORDS[index];
+            if (word.length() == length && regionMatches(input, offset, word)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Validate mnemonic.
+     *
+     * @param mnemonic words separated by single spaces
+     * @return true if it's valid, otherwise false
+     */
+    public boolean isValid(
+            @NonNull CharSequence mnemonic
+    ) {
+        Arrays.fill(packed, 0L);
+        int count = 0;
+        int length = mnemonic.length();
+        for (int start = 0; start <= length; ) {
+            int end = start;
+            while (end < length && mnemonic.charAt(end) != ' ') {
+                end++;
+            }
+            int index = indexOf(mnemonic, start, end - start);
+            if (index < 0) {
+                return false; // also an empty word of leading, trailing or double space
+            }
+            if (count == MAX_WORDS) {
+                return isValidLong(mnemonic);
+            }
+            pack(count++, index);
+            start = end + 1;
+        }
+        if (count % 3 != 0) {
+            return false;
+        }
+
+        // entropy (32 bits per 3 words) followed by checksum (1 bit per 3 words)
+        int entropyLength = count / 3 * 4;
+        for (int i = 0; i < entropyLength; i++) {
+            entropy[i] = (byte) (packed[i >>> 3] >>> (56 - 8 * (i & 7)));
+        }
+        sha256.update(entropy, 0, entropyLength);
+        try {
+            sha256.digest(hash, 0, 32);
+        } catch (DigestException ex) {
+            throw new IllegalStateException(ex); // cannot happen, the buffer is 32 bytes long
+        }
+        int checksumBits = count / 3;
+        int position = entropyLength * 8;
+        int checksum = (int) (packed[position >>> 6] >>> (64 - (position & 63) - checksumBits)) & ((1 << checksumBits) - 1);
+        return checksum == (hash[0] & 0xff) >>> (8 - checksumBits);
+    }
+
+    /**
+     * Validate many mnemonics, e.g. for a bulk import.
+     *
+     * @param mnemonics mnemonics to be validated
+     * @return validity of the mnemonics, the validity of mnemonic at position i is at position i
+     */
+    public boolean[] areValid(
+            @NonNull List<? extends CharSequence> mnemonics
+    ) {
+        boolean[] valid = new boolean[mnemonics.size()];
+        int i = 0;
+        for (CharSequence mnemonic : mnemonics) {
+            valid[i++] = mnemonic != null && isValid(mnemonic);
+        }
+        return valid;
+    }
+
+    private void pack(int position, int index) {
+        int bit = position * 11;
+        int shift = 64 - 11 - (bit & 63);
+        if (shift >= 0) {
+            packed[bit >>> 6] |= (long) index << shift;
+        } else { // the index straddles two longs
+            packed[bit >>> 6] |= (long) index >>> -shift;
+            packed[(bit >>> 6) + 1] |= (long) index << (64 + shift);
+        }
+    }
+
+    private static boolean isValidLong(CharSequence mnemonic) {
+        try {
+            MnemonicCode.INSTANCE.check(Arrays.asList(mnemonic.toString().split(" ", -1)));
+            return true;
+        } catch (MnemonicException e) {
+            return false;
+        }
+    }
+
+    private static int hash(CharSequence input, int offset, int length) {
+        int h = length;
+        for (int i = offset; i < offset + length; i++) {
+            h = h * 31 + input.charAt(i);
+        }
+        return h ^ (h >>> 7) ^ (h >>> 13);
+    }
+
+    private static boolean regionMatches(CharSequence input, int offset, String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (input.charAt(offset + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,119 @@
+package cryptoj.tools;
+
+import lombok.NonNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * PBKDF2-HMAC-SHA512 used to derive a seed from mnemonic (BIP 39).<br>
+ * <br>
+ * The HMAC pad states are precomputed once per password, and the iterations run on long[] state
+ * with no per-round allocation. Only the first output block is computed, since the seed is exactly
+ * as long as one HMAC-SHA512 output.<br>
+ * Ref: BIP 39 - https://github.com/bitcoin/bips/blob/master/bip-0039.mediawiki
+ */
+public class Pbkdf2Sha512 {
+
+    public static final int SEED_ITERATIONS = 2048;
+    public static final int SEED_LENGTH = HmacSha512.MAC_LENGTH;
+
+    /**
+     * Derive seed from mnemonic.
+     *
+     * @param mnemonic   mnemonic, used as password as is
+     * @param passphrase which was used when mnemonic was generated, null means empty passphrase
+     * @return 64 bytes long seed
+     */
+    public static byte[] deriveSeed(
+            @NonNull String mnemonic,
+            String passphrase
+    ) {
+        // fix passphrase
+        if (passphrase == null) {
+            passphrase = "";
+        }
+        return derive(
+                mnemonic.getBytes(StandardCharsets.UTF_8),
+                ("mnemonic" + passphrase).getBytes(StandardCharsets.UTF_8),
+                SEED_ITERATIONS
+        );
+    }
+
+    /**
+     * Derive seeds from many mnemonics in parallel on the common fork-join pool.
+     *
+     * @param mnemonics  mnemonics
+     * @param passphrase which was used when all the mnemonics were generated, null means empty passphrase
+     * @return 64 bytes long seeds, the seed of i-th mnemonic is at position i
+     */
+    public static byte[][] deriveSeeds(
+            @NonNull List<String> mnemonics,
+            String passphrase
+    ) {
+        byte[][] seeds = new byte[mnemonics.size()][];
+        IntStream.range(0, seeds.length)
+                .parallel()
+                .forEach(i -> seeds[i] = deriveSeed(mnemonics.get(i), passphrase));
+        return seeds;
+    }
+
+    /**
+     * Derive the first 64 bytes long block of PBKDF2-HMAC-SHA512.
+     *
+     * @param password   password
+     * @param salt       salt
+     * @param iterations number of iterations
+     * @return 64 bytes long derived key
+     */
+    public static byte[] derive(
+            @NonNull byte[] password,
+            @NonNull byte[] salt,
+            int iterations
+    ) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Iterations must be at least 1.");
+        }
+
+        HmacSha512 hmac = new HmacSha512(password);
+        long[] scratch = new long[88];
+
+        // U1 = HMAC(password, salt || INT(1))
+        byte[] saltAndIndex = Arrays.copyOf(salt, salt.length + 4);
+        saltAndIndex[salt.length + 3] = 1;
+        byte[] first = new byte[HmacSha512.MAC_LENGTH];
+        hmac.mac(saltAndIndex, 0, saltAndIndex.length, first, 0, scratch);
+
+        long[] u = new long[8];
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                u[i] = (u[i] << 8) | (first[(i << 3) + j] & 0xffL);
+            }
+        }
+        long[] t = Arrays.copyOf(u, 8);
+
+        // T = U1 ^ U2 ^ ... ^ Uc, where Ui = HMAC(password, Ui-1)
+        for (int n = 1; n < iterations; n++) {
+            hmac.macWords(u, u, scratch);
+            for (int i = 0; i < 8; i++) {
+                t[i] ^= u[i];
+            }
+        }
+
+        byte[] out = new byte[HmacSha512.MAC_LENGTH];
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                out[(i << 3) + j] = (byte) (t[i] >>> (56 - (j << 3)));
+            }
+        }
+
+        Arrays.fill(first, (byte) 0);
+        Arrays.fill(u, 0L);
+        Arrays.fill(t, 0L);
+        Arrays.fill(scratch, 0L);
+        return out;
+    }
+
+}
@@ -0,0 +1,203 @@
+package cryptoj.tools;
+
+import cryptoj.CryptoJ;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import org.bitcoinj.core.Utils;
+import org.bitcoinj.crypto.DeterministicKey;
+import org.bitcoinj.crypto.HDKeyDerivation;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static lombok.AccessLevel.NONE;
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Size and TTL bounded cache of master (root) keys derived from mnemonics.<br>
+ * <br>
+ * Deriving the seed from a mnemonic runs PBKDF2 with 2048 rounds of HMAC-SHA512, so repeated calls with
+ * the same mnemonic can skip it entirely. Entries are keyed by a salted SHA-256 hash of mnemonic and
+ * passphrase, so neither is kept in the cache. Key material of expired, evicted or cleared entries is zeroed.
+ */
+@Getter
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+public class SeedCache {
+
+    int maxEntries;
+    long ttlMillis;
+
+    @Getter(NONE)
+    byte[] salt = new byte[32];
+    @Getter(NONE)
+    LinkedHashMap<String, Entry> entries;
+
+    @NonFinal
+    long hits;
+    @NonFinal
+    long misses;
+
+    /**
+     * Create empty cache.
+     *
+     * @param maxEntries max number of cached master keys, the least recently used one is evicted first
+     * @param ttlMillis  time to live of cached master key in milliseconds
+     */
+    public SeedCache(
+            int maxEntries,
+            long ttlMillis
+    ) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Max entries must be at least 1.");
+        }
+        if (ttlMillis < 1) {
+            throw new IllegalArgumentException("TTL must be at least 1 ms.");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        CryptoJ.getEntropySource().nextBytes(salt);
+    }
+
+    /**
+     * Get cached master key.
+     *
+     * @param mnemonic   mnemonic
+     * @param passphrase which was used when mnemonic was generated
+     * @return master private key (m), or null if it is not cached
+     */
+    public synchronized DeterministicKey get(
+            @NonNull String mnemonic,
+            @NonNull String passphrase
+    ) {
+        String cacheKey = cacheKey(mnemonic, passphrase);
+        Entry entry = entries.get(cacheKey);
+        if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+            entries.remove(cacheKey);
+            entry.wipe();
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return HDKeyDerivation.createMasterPrivKeyFromBytes(entry.privKey, entry.chainCode);
+    }
+
+    /**
+     * Put master key into cache.
+     *
+     * @param mnemonic   mnemonic
+     * @param passphrase which was used when mnemonic was generated
+     * @param masterKey  master private key (m) derived from the mnemonic
+     */
+    public synchronized void put(
+            @NonNull String mnemonic,
+            @NonNull String passphrase,
+            @NonNull DeterministicKey masterKey
+    ) {
+        Entry previous = entries.put(
+                cacheKey(mnemonic, passphrase),
+                new Entry(masterKey.getPrivKeyBytes(), masterKey.getChainCode(), System.currentTimeMillis() + ttlMillis)
+        );
+        if (previous != null) {
+            previous.wipe();
+        }
+        evict();
+    }
+
+    /**
+     * Remove all cached master keys.
+     */
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            entry.wipe();
+        }
+        entries.clear();
+    }
+
+    /**
+     * @return number of currently cached master keys, including expired ones which were not removed yet
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return number of lookups which have found the master key
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of lookups which have not found the master key
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Remove the least recently used entries while the cache is over capacity or they are expired. It stops at the
+     * first entry which is kept, so a put costs O(1) amortized - expired entries behind it are removed by later
+     * puts or by {@link #get(String, String)}.
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) { // iterates from the least recently used
+            Entry entry = it.next().getValue();
+            if (entries.size() <= maxEntries && entry.expiresAt >= now) {
+                return;
+            }
+            it.remove();
+            entry.wipe();
+        }
+    }
+
+    private String cacheKey(
+            String mnemonic,
+            String passphrase
+    ) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Sha-256 digest algorithm is not supported", e);
+        }
+        digest.update(salt);
+        digest.update(mnemonic.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(passphrase.getBytes(StandardCharsets.UTF_8));
+        return Utils.HEX.encode(digest.digest());
+    }
+
+    @FieldDefaults(level = PRIVATE, makeFinal = true)
+    private static class Entry {
+
+        byte[] privKey;
+        byte[] chainCode;
+        long expiresAt;
+
+        Entry(byte[] privKey, byte[] chainCode, long expiresAt) {
+            this.privKey = privKey;
+            this.chainCode = Arrays.copyOf(chainCode, chainCode.length);
+            this.expiresAt = expiresAt;
+        }
+
+        void wipe() {
+            Arrays.fill(privKey, (byte) 0);
+            Arrays.fill(chainCode, (byte) 0);
+        }
+
+    }
+
+}
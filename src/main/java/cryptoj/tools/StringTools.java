@@ -1,11 +1,9 @@
 package cryptoj.tools;
 
+import cryptoj.CryptoJ;
 import lombok.NonNull;
 import lombok.experimental.FieldDefaults;
 
-import java.security.SecureRandom;
-import java.util.Random;
-
 import static lombok.AccessLevel.PRIVATE;
 
 @FieldDefaults(level = PRIVATE)
@@ -24,7 +22,7 @@ public class StringTools {
         if (arrayOfSymbols.length() < 2) {
             throw new IllegalArgumentException("TArray of symbols is too short (min 2).");
         }
-        Random random = new SecureRandom();
+        EntropySource random = CryptoJ.getEntropySource();
         char[] symbolsCharArray = arrayOfSymbols.toCharArray();
         char[] buffer = new char[length];
         for (int idx = 0; idx < buffer.length; ++idx) {
@@ -0,0 +1,277 @@
+package cryptoj.tools;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Arrays;
+
+import static lombok.AccessLevel.PRIVATE;
+
+/**
+ * Lane-parallel hash160 on the Vector API - each lane of an int vector holds a different message, so one SHA-256
+ * and RIPEMD-160 round advances the hashes of all the lanes (4 with SSE/NEON, 8 with AVX2, 16 with
+ * AVX-512).<br>
+ * <br>
+ * It is loaded reflectively by {@link Hash160} only when the jdk.incubator.vector module is resolved, nothing else
+ * may reference this class. The instance is not thread-safe.
+ */
+@FieldDefaults(level = PRIVATE, makeFinal = true)
+class VectorHash160 implements Hash160.Lanes {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private static final int[] SHA256_K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+    private static final int[] SHA256_H = {
+            0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    private static final int[] RIPEMD160_H = {0x67452301, 0xefcdab89, 0x98badcfe, 0x10325476, 0xc3d2e1f0};
+    private static final int[] RIPEMD160_KL = {0x00000000, 0x5a827999, 0x6ed9eba1, 0x8f1bbcdc, 0xa953fd4e};
+    private static final int[] RIPEMD160_KR = {0x50a28be6, 0x5c4dd124, 0x6d703ef3, 0x7a6d76e9, 0x00000000};
+    private static final int[] RIPEMD160_RL = {
+            0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15,
+            7, 4, 13, 1, 10, 6, 15, 3, 12, 0, 9, 5, 2, 14, 11, 8,
+            3, 10, 14, 4, 9, 15, 8, 1, 2, 7, 0, 6, 13, 11, 5, 12,
+            1, 9, 11, 10, 0, 8, 12, 4, 13, 3, 7, 15, 14, 5, 6, 2,
+            4, 0, 5, 9, 7, 12, 2, 10, 14, 1, 3, 8, 11, 6, 15, 13
+    };
+    private static final int[] RIPEMD160_RR = {
+            5, 14, 7, 0, 9, 2, 11, 4, 13, 6, 15, 8, 1, 10, 3, 12,
+            6, 11, 3, 7, 0, 13, 5, 10, 14, 15, 8, 12, 4, 9, 1, 2,
+            15, 5, 1, 3, 7, 14, 6, 9, 11, 8, 12, 2, 10, 0, 4, 13,
+            8, 6, 4, 1, 3, 11, 15, 0, 5, 12, 2, 13, 9, 7, 10, 14,
+            12, 15, 10, 4, 1, 5, 8, 7, 6, 2, 13, 14, 0, 3, 9, 11
+    };
+    private static final int[] RIPEMD160_SL = {
+            11, 14, 15, 12, 5, 8, 7, 9, 11, 13, 14, 15, 6, 7, 9, 8,
+            7, 6, 8, 13, 11, 9, 7, 15, 7, 12, 15, 9, 11, 7, 13, 12,
+            11, 13, 6, 7, 14, 9, 13, 15, 14, 8, 13, 6, 5, 12, 7, 5,
+            11, 12, 14, 15, 14, 15, 9, 8, 9, 14, 5, 6, 8, 6, 5, 12,
+            9, 15, 5, 11, 6, 8, 13, 12, 5, 12, 13, 14, 11, 8, 5, 6
+    };
+    private static final int[] RIPEMD160_SR = {
+            8, 9, 9, 11, 13, 15, 15, 5, 7, 7, 8, 11, 14, 14, 12, 6,
+            9, 13, 15, 7, 12, 8, 9, 11, 7, 7, 12, 7, 6, 15, 13, 11,
+            9, 7, 15, 11, 8, 6, 6, 14, 12, 13, 5, 14, 13, 13, 7, 5,
+            15, 5, 8, 11, 14, 14, 6, 14, 6, 9, 12, 9, 12, 5, 15, 8,
+            8, 5, 12, 9, 12, 5, 14, 6, 8, 13, 6, 5, 15, 13, 11, 11
+    };
+
+    int width = SPECIES.length();
+    byte[] block = new byte[64];
+    int[] schedule = new int[64 * width]; // word t of lane j at t * width + j
+    int[] message = new int[16 * width];  // RIPEMD-160 block of the SHA-256 hashes, same layout
+    int[] state = new int[8 * width];
+
+    VectorHash160() {
+        // the 32 bytes long SHA-256 hash is padded to a single little-endian RIPEMD-160 block
+        Arrays.fill(message, 8 * width, 9 * width, 0x80);
+        Arrays.fill(message, 14 * width, 15 * width, 256);
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public boolean hash160(byte[][] inputs, int from, byte[] out, int outOffset) {
+        int blocks = blockCount(inputs[from].length);
+        for (int j = 1; j < width; j++) {
+            if (blockCount(inputs[from + j].length) != blocks) {
+                return false;
+            }
+        }
+
+        sha256(inputs, from, blocks);
+        for (int i = 0; i < 8; i++) {
+            reverseBytes(IntVector.fromArray(SPECIES, state, i * width)).intoArray(message, i * width);
+        }
+        ripemd160();
+
+        for (int j = 0; j < width; j++) {
+            int position = outOffset + j * Hash160.HASH_LENGTH;
+            for (int i = 0; i < 5; i++) {
+                int word = state[i * width + j];
+                out[position++] = (byte) word;
+                out[position++] = (byte) (word >>> 8);
+                out[position++] = (byte) (word >>> 16);
+                out[position++] = (byte) (word >>> 24);
+            }
+        }
+        return true;
+    }
+
+    private static int blockCount(int length) {
+        return (int) (((long) length + 9 + 63) >>> 6); // message, 0x80 and 64-bit length
+    }
+
+    /**
+     * SHA-256 of width messages of the same number of blocks, the big-endian hash words are left in state.
+     */
+    private void sha256(byte[][] inputs, int from, int blocks) {
+        IntVector h0 = IntVector.broadcast(SPECIES, SHA256_H[0]);
+        IntVector h1 = IntVector.broadcast(SPECIES, SHA256_H[1]);
+        IntVector h2 = IntVector.broadcast(SPECIES, SHA256_H[2]);
+        IntVector h3 = IntVector.broadcast(SPECIES, SHA256_H[3]);
+        IntVector h4 = IntVector.broadcast(SPECIES, SHA256_H[4]);
+        IntVector h5 = IntVector.broadcast(SPECIES, SHA256_H[5]);
+        IntVector h6 = IntVector.broadcast(SPECIES, SHA256_H[6]);
+        IntVector h7 = IntVector.broadcast(SPECIES, SHA256_H[7]);
+
+        for (int n = 0; n < blocks; n++) {
+            for (int j = 0; j < width; j++) {
+                loadBlock(inputs[from + j], n, blocks, j);
+            }
+            for (int t = 16; t < 64; t++) {
+                IntVector w2 = word(t - 2);
+                IntVector w15 = word(t - 15);
+                IntVector s0 = w15.lanewise(VectorOperators.ROR, 7)
+                        .lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.ROR, 18))
+                        .lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.LSHR, 3));
+                IntVector s1 = w2.lanewise(VectorOperators.ROR, 17)
+                        .lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.ROR, 19))
+                        .lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.LSHR, 10));
+                word(t - 16).add(s0).add(word(t - 7)).add(s1).intoArray(schedule, t * width);
+            }
+
+            IntVector a = h0, b = h1, c = h2, d = h3, e = h4, f = h5, g = h6, h = h7;
+            for (int t = 0; t < 64; t++) {
+                IntVector s1 = e.lanewise(VectorOperators.ROR, 6)
+                        .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 11))
+                        .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 25));
+                IntVector ch = g.lanewise(VectorOperators.XOR, e.and(f.lanewise(VectorOperators.XOR, g)));
+                IntVector t1 = h.add(s1).add(ch).add(SHA256_K[t]).add(word(t));
+                IntVector s0 = a.lanewise(VectorOperators.ROR, 2)
+                        .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 13))
+                        .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 22));
+                IntVector maj = a.and(b).or(c.and(a.or(b)));
+                h = g;
+                g = f;
+                f = e;
+                e = d.add(t1);
+                d = c;
+                c = b;
+                b = a;
+                a = t1.add(s0).add(maj);
+            }
+            h0 = h0.add(a);
+            h1 = h1.add(b);
+            h2 = h2.add(c);
+            h3 = h3.add(d);
+            h4 = h4.add(e);
+            h5 = h5.add(f);
+            h6 = h6.add(g);
+            h7 = h7.add(h);
+        }
+
+        h0.intoArray(state, 0);
+        h1.intoArray(state, width);
+        h2.intoArray(state, 2 * width);
+        h3.intoArray(state, 3 * width);
+        h4.intoArray(state, 4 * width);
+        h5.intoArray(state, 5 * width);
+        h6.intoArray(state, 6 * width);
+        h7.intoArray(state, 7 * width);
+    }
+
+    /**
+     * Pad block b of the message into the first 16 schedule words of the lane.
+     */
+    private void loadBlock(byte[] input, int b, int blocks, int lane) {
+        int start = b << 6;
+        int length = Math.min(64, input.length - start);
+        if (length > 0) {
+            System.arraycopy(input, start, block, 0, length);
+        }
+        Arrays.fill(block, Math.max(0, length), 64, (byte) 0);
+        if (length >= 0 && length < 64) {
+            block[length] = (byte) 0x80;
+        }
+        if (b == blocks - 1) {
+            long bits = (long) input.length << 3;
+            for (int k = 0; k < 8; k++) {
+                block[56 + k] = (byte) (bits >>> (56 - 8 * k));
+            }
+        }
+        for (int t = 0; t < 16; t++) {
+            schedule[t * width + lane] = (block[4 * t] & 0xff) << 24 | (block[4 * t + 1] & 0xff) << 16
+                    | (block[4 * t + 2] & 0xff) << 8 | (block[4 * t + 3] & 0xff);
+        }
+    }
+
+    private IntVector word(int t) {
+        return IntVector.fromArray(SPECIES, schedule, t * width);
+    }
+
+    /**
+     * RIPEMD-160 of the single block message, the little-endian hash words are left in state.
+     */
+    private void ripemd160() {
+        IntVector al = IntVector.broadcast(SPECIES, RIPEMD160_H[0]), ar = al;
+        IntVector bl = IntVector.broadcast(SPECIES, RIPEMD160_H[1]), br = bl;
+        IntVector cl = IntVector.broadcast(SPECIES, RIPEMD160_H[2]), cr = cl;
+        IntVector dl = IntVector.broadcast(SPECIES, RIPEMD160_H[3]), dr = dl;
+        IntVector el = IntVector.broadcast(SPECIES, RIPEMD160_H[4]), er = el;
+
+        for (int j = 0; j < 80; j++) {
+            int round = j >>> 4;
+            IntVector t = al.add(f(round, bl, cl, dl)).add(IntVector.fromArray(SPECIES, message, RIPEMD160_RL[j] * width))
+                    .add(RIPEMD160_KL[round]).lanewise(VectorOperators.ROL, RIPEMD160_SL[j]).add(el);
+            al = el;
+            el = dl;
+            dl = cl.lanewise(VectorOperators.ROL, 10);
+            cl = bl;
+            bl = t;
+
+            t = ar.add(f(4 - round, br, cr, dr)).add(IntVector.fromArray(SPECIES, message, RIPEMD160_RR[j] * width))
+                    .add(RIPEMD160_KR[round]).lanewise(VectorOperators.ROL, RIPEMD160_SR[j]).add(er);
+            ar = er;
+            er = dr;
+            dr = cr.lanewise(VectorOperators.ROL, 10);
+            cr = br;
+            br = t;
+        }
+
+        IntVector.broadcast(SPECIES, RIPEMD160_H[1]).add(cl).add(dr).intoArray(state, 0);
+        IntVector.broadcast(SPECIES, RIPEMD160_H[2]).add(dl).add(er).intoArray(state, width);
+        IntVector.broadcast(SPECIES, RIPEMD160_H[3]).add(el).add(ar).intoArray(state, 2 * width);
+        IntVector.broadcast(SPECIES, RIPEMD160_H[4]).add(al).add(br).intoArray(state, 3 * width);
+        IntVector.broadcast(SPECIES, RIPEMD160_H[0]).add(bl).add(cr).intoArray(state, 4 * width);
+    }
+
+    /**
+     * Boolean function of the RIPEMD-160 round.
+     */
+    private static IntVector f(int round, IntVector x, IntVector y, IntVector z) {
+        switch (round) {
+            case 0:
+                return x.lanewise(VectorOperators.XOR, y).lanewise(VectorOperators.XOR, z);
+            case 1:
+                return z.lanewise(VectorOperators.XOR, x.and(y.lanewise(VectorOperators.XOR, z)));
+            case 2:
+                return x.or(y.not()).lanewise(VectorOperators.XOR, z);
+            case 3:
+                return y.lanewise(VectorOperators.XOR, z.and(x.lanewise(VectorOperators.XOR, y)));
+            default:
+                return x.lanewise(VectorOperators.XOR, y.or(z.not()));
+        }
+    }
+
+    private static IntVector reverseBytes(IntVector v) {
+        return v.lanewise(VectorOperators.ROL, 8).and(0x00ff00ff)
+                .or(v.lanewise(VectorOperators.ROL, 24).and(0xff00ff00));
+    }
+
+}
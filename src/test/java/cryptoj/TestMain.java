@@ -2,21 +2,90 @@ package cryptoj;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import cryptoj.classes.AddressClassification;
+import cryptoj.classes.DerivedAddress;
+import cryptoj.classes.PrivateKeyContext;
 import cryptoj.classes.TXReceiver;
 import cryptoj.classes.UTXObject;
+import cryptoj.classes.XPubHandle;
+import cryptoj.engines.GapLimitScanner;
+import cryptoj.engines.KeyPairAuditor;
+import cryptoj.engines.ParallelAddressDeriver;
+import cryptoj.engines.ProvisioningPipeline;
+import cryptoj.engines.UsageOracle;
+import cryptoj.enums.AddressStatus;
 import cryptoj.enums.AddressType;
 import cryptoj.enums.Coin;
+import cryptoj.enums.CoinType;
 import cryptoj.enums.Network;
 import cryptoj.exceptions.CryptoJException;
+import cryptoj.index.AddressBook;
+import cryptoj.index.AddressFilter;
+import cryptoj.index.AddressIndex;
+import cryptoj.index.IndexAllocator;
+import cryptoj.tools.Base58Codec;
+import cryptoj.tools.Bech32Codec;
+import cryptoj.tools.DrbgEntropySource;
+import cryptoj.tools.EntropySource;
+import cryptoj.tools.Hash160;
+import cryptoj.tools.HexCodec;
+import cryptoj.tools.HmacSha512;
+import cryptoj.tools.MnemonicValidator;
+import cryptoj.tools.Pbkdf2Sha512;
+import cryptoj.tools.SeedCache;
+import cryptoj.tools.StringTools;
 import lombok.NonNull;
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.AddressFormatException;
+import org.bitcoinj.core.Base58;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.LegacyAddress;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.SegwitAddress;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Utils;
+import org.bitcoinj.crypto.DeterministicKey;
+import org.bitcoinj.crypto.MnemonicCode;
+import org.bitcoinj.crypto.MnemonicException;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-
+import org.junit.jupiter.api.io.TempDir;
+import org.web3j.crypto.Keys;
+import org.web3j.crypto.Sign;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.BufferUnderflowException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -346,6 +415,953 @@ public class TestMain {
         // TODO: ... add some test cases
     }
 
+    @Test
+    @DisplayName("Test xPub handle")
+    void testXPubHandle() {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+
+        try {
+            for (Network network : Network.values()) {
+                AddressType addrType = AddressType.P2WPKH_NATIVE_SEGWIT;
+                if (network.getCoinType() == CoinType.ETH) {
+                    addrType = AddressType.P2PKH_LEGACY;
+                }
+                String xpub = CryptoJ.generateXPub(network, addrType, mnemonic);
+                XPubHandle handle = CryptoJ.parseXPub(network, addrType, xpub);
+                for (int index = 0; index < 5; index++) {
+                    assertEquals(CryptoJ.generateAddress(network, addrType, xpub, index), handle.address(index));
+                }
+            }
+        } catch (CryptoJException e) {
+            assertTrue(false, "Unexpected exception");
+        }
+
+        // invalid xPub - checksum validation failed
+        assertThrows(CryptoJException.class, () -> CryptoJ.parseXPub(Network.BITCOIN_MAINNET, AddressType.P2PKH_LEGACY,
+                "xpub661MyMwAqRbcEYS8w7XLSVeEsBXy79zSzH1J8vCdxAZningWLdN3zgtU6N8ZMMXctdiCjxTNq964yKkwrkBJJwpzZS4HS2fxvyYUA4q2Xe4"));
+        // invalid address type - P2SH does not support HD wallet
+        assertThrows(CryptoJException.class, () -> CryptoJ.parseXPub(Network.BITCOIN_MAINNET, AddressType.P2SH_PAY_TO_SCRIPT_HASH,
+                "xpub661MyMwAqRbcFtXgS5sYJABqqG9YLmC4Q1Rdap9gSE8NqtwybGhePY2gZ29ESFjqJoCu1Rupje8YtGqsefD265TMg7usUDFdp6W1EGMcet8"));
+    }
+
+    @Test
+    @DisplayName("Test address range generation")
+    void testAddressRange() {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+
+        try {
+            Network network = Network.BITCOIN_MAINNET;
+            AddressType addrType = AddressType.P2WPKH_NATIVE_SEGWIT;
+            String xpub = CryptoJ.generateXPub(network, addrType, mnemonic);
+            String[] addresses = CryptoJ.generateAddresses(network, addrType, xpub, 2, 3);
+            assertEquals(3, addresses.length);
+            assertEquals(addresses[1], "bc1qqkhc9mjkw0rr6n5xechhnvj2lldnd8g7nc3smd");
+            for (int i = 0; i < addresses.length; i++) {
+                assertEquals(CryptoJ.generateAddress(network, addrType, xpub, 2 + i), addresses[i]);
+            }
+            assertEquals(0, CryptoJ.generateAddresses(network, addrType, xpub, 0, 0).length);
+
+            // invalid ranges
+            assertThrows(CryptoJException.class, () -> CryptoJ.generateAddresses(network, addrType, xpub, -1, 3));
+            assertThrows(CryptoJException.class, () -> CryptoJ.generateAddresses(network, addrType, xpub, 0, -1));
+            assertThrows(CryptoJException.class, () -> CryptoJ.generateAddresses(network, addrType, xpub, Integer.MAX_VALUE, 2));
+        } catch (CryptoJException e) {
+            assertTrue(false, "Unexpected exception");
+        }
+    }
+
+    @Test
+    @DisplayName("Test parallel address derivation")
+    void testParallelAddressDerivation() {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+
+        try {
+            Network network = Network.LITECOIN_MAINNET;
+            AddressType addrType = AddressType.P2PKH_LEGACY;
+            XPubHandle handle = CryptoJ.parseXPub(network, addrType, CryptoJ.generateXPub(network, addrType, mnemonic));
+            String[] expected = handle.generateAddresses(5, 300);
+
+            ForkJoinPool pool = new ForkJoinPool(4);
+            ParallelAddressDeriver deriver = new ParallelAddressDeriver(handle, pool, 16);
+            assertArrayEquals(expected, deriver.generateAddresses(5, 300));
+
+            List<String> received = new ArrayList<>();
+            deriver.generateAddresses(5, 300, (derivationIndex, address) -> {
+                assertEquals(5 + received.size(), derivationIndex);
+                received.add(address);
+            });
+            assertArrayEquals(expected, received.toArray());
+            pool.shutdown();
+
+            assertThrows(CryptoJException.class, () -> deriver.generateAddresses(-1, 10));
+        } catch (CryptoJException e) {
+            assertTrue(false, "Unexpected exception");
+        }
+    }
+
+    @Test
+    @DisplayName("Test private key context")
+    void testPrivateKeyContext() {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+
+        try {
+            PrivateKeyContext context = new PrivateKeyContext(Network.BITCOIN_TESTNET, AddressType.P2WPKH_NATIVE_SEGWIT, mnemonic, null);
+            assertEquals(context.privateKey(5), "cV6qvG8sAzkVLjJ8oGfvLwBsdyXuKWryTcg5BYN1X4FGFF4Bfcfz");
+            assertEquals(context.xPub(), "vpub5bCa8otgRnQ7Xb7qhGFEkGwRjDz82Qfj3x9e5c2r5Xqpobz6MPaf3Zs4M6uNartStzWAuaZNZFdM3TThRTHKdN1NXbGSnXwqRgpS1kxSjtL");
+
+            String[] privKeys = CryptoJ.generatePrivateKeys(Network.ETHEREUM_MAINNET, AddressType.P2PKH_LEGACY, mnemonic, null, 3, 2);
+            assertEquals(2, privKeys.length);
+            assertEquals(privKeys[1], "0x23a3d50abb6724676f34faaba2d3d0a1fb72b00a453c22d411813c1c46c01b81");
+            assertEquals(privKeys[0], CryptoJ.generatePrivateKey(Network.ETHEREUM_MAINNET, AddressType.P2PKH_LEGACY, mnemonic, 3));
+
+            assertThrows(CryptoJException.class, () -> context.generatePrivateKeys(-1, 2));
+        } catch (CryptoJException e) {
+            assertTrue(false, "Unexpected exception");
+        }
+    }
+
+    @Test
+    @DisplayName("Test seed cache")
+    void testSeedCache() {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+
+        try {
+            SeedCache cache = CryptoJ.enableSeedCache(1, 60_000);
+            String xpub = CryptoJ.generateXPub(Network.BITCOIN_MAINNET, AddressType.P2PKH_LEGACY, mnemonic);
+            String prvKey = CryptoJ.generatePrivateKey(Network.BITCOIN_MAINNET, AddressType.P2PKH_LEGACY, mnemonic, 0);
+            assertEquals(xpub, "xpub6FMTbmnDJwazR9LAnoTn8PwZWLHzJd7jLBng6cqCAaEhp7ZMLAf1usWraE3VVqtNphkPMf6YoRDzPuwLATY362uS4FGZfdDbfDTbFH1sdwz");
+            assertEquals(prvKey, "L3zJJbXrwr7Gk5Jbp7icqXgVYmhhyBidwnoA5axHRffjKqfZc4Gq");
+            assertEquals(1, cache.getMisses());
+            assertEquals(1, cache.getHits());
+
+            // different passphrase is a different seed, and evicts the previous one
+            CryptoJ.generateXPub(Network.BITCOIN_MAINNET, AddressType.P2PKH_LEGACY, mnemonic, "secret");
+            assertEquals(1, cache.size());
+            CryptoJ.generateXPub(Network.BITCOIN_MAINNET, AddressType.P2PKH_LEGACY, mnemonic);
+            assertEquals(3, cache.getMisses());
+        } catch (CryptoJException e) {
+            assertTrue(false, "Unexpected exception");
+        } finally {
+            CryptoJ.disableSeedCache();
+        }
+    }
+
+    @Test
+    @DisplayName("Test PBKDF2 seed derivation")
+    void testSeedDerivation() throws Exception {
+        // HMAC-SHA512 - compared to JCA implementation for messages of 0 - 2 blocks, keys of 0 - 2 blocks
+        Mac jcaMac = Mac.getInstance("HmacSHA512");
+        for (int keyLength : new int[]{1, 64, 128, 129, 200}) {
+            byte[] key = new byte[keyLength];
+            Arrays.fill(key, (byte) keyLength);
+            jcaMac.init(new SecretKeySpec(key, "HmacSHA512"));
+            HmacSha512 hmac = new HmacSha512(key);
+            for (int length = 0; length < 300; length++) {
+                byte[] message = new byte[length];
+                Arrays.fill(message, (byte) length);
+                assertArrayEquals(jcaMac.doFinal(message), hmac.mac(message));
+            }
+        }
+
+        // seed - compared to BitcoinJ implementation
+        List<String> mnemonics = List.of(
+                "floor earn cube small wolf elevator leaf duty deposit renew balcony chat",
+                "clap shove riot taxi vessel achieve echo swift ripple blush rate census sick exit dry make adult swing",
+                CryptoJ.generateMnemonic(24)
+        );
+        for (String mnemonic : mnemonics) {
+            List<String> words = Arrays.asList(mnemonic.split(" "));
+            assertArrayEquals(MnemonicCode.toSeed(words, ""), Pbkdf2Sha512.deriveSeed(mnemonic, null));
+            assertArrayEquals(MnemonicCode.toSeed(words, "secret"), Pbkdf2Sha512.deriveSeed(mnemonic, "secret"));
+        }
+        byte[][] seeds = Pbkdf2Sha512.deriveSeeds(mnemonics, "secret");
+        for (int i = 0; i < seeds.length; i++) {
+            assertArrayEquals(Pbkdf2Sha512.deriveSeed(mnemonics.get(i), "secret"), seeds[i]);
+        }
+    }
+
+    @Test
+    @DisplayName("Test xPub generation for all combinations")
+    void testAllXPubs() {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+
+        try {
+            Set<AddressType> addrTypes = EnumSet.of(AddressType.P2PKH_LEGACY, AddressType.P2WPKH_NATIVE_SEGWIT);
+            Map<Network, Map<AddressType, String>> xPubs = CryptoJ.generateAllXPubs(mnemonic, null, EnumSet.allOf(Network.class), addrTypes);
+            assertEquals(Network.values().length, xPubs.size());
+            for (Network network : Network.values()) {
+                assertEquals(addrTypes, xPubs.get(network).keySet());
+                for (AddressType addrType : addrTypes) {
+                    assertEquals(CryptoJ.generateXPub(network, addrType, mnemonic), xPubs.get(network).get(addrType));
+                }
+            }
+
+            assertThrows(CryptoJException.class, () -> CryptoJ.generateAllXPubs(mnemonic, null,
+                    EnumSet.of(Network.BITCOIN_MAINNET), EnumSet.of(AddressType.P2SH_PAY_TO_SCRIPT_HASH)));
+        } catch (CryptoJException e) {
+            assertTrue(false, "Unexpected exception");
+        }
+    }
+
+    @Test
+    @DisplayName("Test mixed network derivation under contention")
+    void testConcurrentNetworks() throws Exception {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+
+        Map<Network, String[]> expected = new EnumMap<>(Network.class);
+        Map<Network, XPubHandle> handles = new EnumMap<>(Network.class);
+        for (Network network : Network.values()) {
+            AddressType addrType = network.getCoinType() == CoinType.ETH ? AddressType.P2PKH_LEGACY : AddressType.P2WPKH_NATIVE_SEGWIT;
+            handles.put(network, CryptoJ.parseXPub(network, addrType, CryptoJ.generateXPub(network, addrType, mnemonic)));
+            expected.put(network, handles.get(network).generateAddresses(0, 20));
+        }
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            results.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    Network network = Network.values()[(seed + i) % Network.values().length];
+                    int index = (seed * 7 + i) % 20;
+                    if (expected.get(network)[index].equals(handles.get(network).address(index)) == false) {
+                        return false;
+                    }
+                    if (CryptoJ.isAddressValid(network, expected.get(network)[index]) == false) {
+                        return false;
+                    }
+                }
+                return true;
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Test address stream")
+    void testAddressStream() {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+
+        try {
+            for (Network network : new Network[]{Network.BITCOIN_MAINNET, Network.ETHEREUM_MAINNET}) {
+                AddressType addrType = network == Network.BITCOIN_MAINNET ? AddressType.P2WPKH_NATIVE_SEGWIT : AddressType.P2PKH_LEGACY;
+                String xPub = CryptoJ.generateXPub(network, addrType, mnemonic);
+                String[] expected = CryptoJ.generateAddresses(network, addrType, xPub, 2, 300);
+
+                List<DerivedAddress> sequential = CryptoJ.addressStream(network, addrType, xPub, 2).limit(300).collect(Collectors.toList());
+                List<DerivedAddress> parallel = CryptoJ.addressStream(network, addrType, xPub, 2).parallel().limit(300).collect(Collectors.toList());
+                assertEquals(sequential, parallel);
+                for (int i = 0; i < expected.length; i++) {
+                    assertEquals(i + 2, sequential.get(i).getDerivationIndex());
+                    assertEquals(expected[i], sequential.get(i).getAddress());
+                    assertEquals(20, sequential.get(i).getScriptHash().length);
+                }
+            }
+
+            String xPub = CryptoJ.generateXPub(Network.BITCOIN_MAINNET, AddressType.P2WPKH_NATIVE_SEGWIT, mnemonic);
+            DerivedAddress found = CryptoJ.addressStream(Network.BITCOIN_MAINNET, AddressType.P2WPKH_NATIVE_SEGWIT, xPub, 0)
+                    .filter(derivedAddress -> derivedAddress.getAddress().equals("bc1qqkhc9mjkw0rr6n5xechhnvj2lldnd8g7nc3smd"))
+                    .findFirst()
+                    .orElseThrow();
+            assertEquals(3, found.getDerivationIndex());
+            assertThrows(CryptoJException.class, () -> CryptoJ.addressStream(Network.BITCOIN_MAINNET, AddressType.P2WPKH_NATIVE_SEGWIT, xPub, -1));
+        } catch (CryptoJException e) {
+            assertTrue(false, "Unexpected exception");
+        }
+    }
+
+    @Test
+    @DisplayName("Test address index")
+    void testAddressIndex() {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+
+        try {
+            AddressIndex index = new AddressIndex(0);
+            int legacy = index.register(CryptoJ.parseXPub(Network.BITCOIN_MAINNET, AddressType.P2PKH_LEGACY,
+                    CryptoJ.generateXPub(Network.BITCOIN_MAINNET, AddressType.P2PKH_LEGACY, mnemonic)));
+            XPubHandle segwitHandle = CryptoJ.parseXPub(Network.BITCOIN_MAINNET, AddressType.P2WPKH_NATIVE_SEGWIT,
+                    CryptoJ.generateXPub(Network.BITCOIN_MAINNET, AddressType.P2WPKH_NATIVE_SEGWIT, mnemonic));
+            int segwit = index.register(segwitHandle);
+
+            index.extend(segwit, 2);
+            assertNull(index.find(Network.BITCOIN_MAINNET, "bc1qqkhc9mjkw0rr6n5xechhnvj2lldnd8g7nc3smd"));
+
+            // growing the range derives only the new addresses, the table grows on the way
+            index.extend(segwit, 1000);
+            index.extend(legacy, 500);
+            assertEquals(1000, index.getIndexedCount(segwit));
+            assertEquals(1500, index.size());
+
+            AddressIndex.Location location = index.find(Network.BITCOIN_MAINNET, "bc1qqkhc9mjkw0rr6n5xechhnvj2lldnd8g7nc3smd");
+            assertNotNull(location);
+            assertEquals(segwit, location.getXPubId());
+            assertEquals(3, location.getDerivationIndex());
+            assertSame(segwitHandle, location.getHandle());
+
+            String[] addresses = segwitHandle.generateAddresses(990, 10);
+            for (int i = 0; i < addresses.length; i++) {
+                long packed = index.findPacked(CryptoJ.decodeAddressHash(Network.BITCOIN_MAINNET, addresses[i]), 0);
+                assertEquals(AddressIndex.pack(segwit, 990 + i), packed);
+            }
+
+            assertEquals(-1L, index.findPacked(new byte[AddressIndex.HASH_LENGTH], 0));
+            assertThrows(CryptoJException.class, () -> index.extend(7, 10));
+            assertThrows(CryptoJException.class, () -> index.find(Network.BITCOIN_MAINNET, "bc1qinvalid"));
+        } catch (CryptoJException e) {
+            assertTrue(false, "Unexpected exception");
+        }
+    }
+
+    @Test
+    @DisplayName("Test address book")
+    void testAddressBook(@TempDir Path directory) throws IOException {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+
+        try {
+            XPubHandle segwit = CryptoJ.parseXPub(Network.BITCOIN_MAINNET, AddressType.P2WPKH_NATIVE_SEGWIT,
+                    CryptoJ.generateXPub(Network.BITCOIN_MAINNET, AddressType.P2WPKH_NATIVE_SEGWIT, mnemonic));
+            XPubHandle ethereum = CryptoJ.parseXPub(Network.ETHEREUM_MAINNET, AddressType.P2PKH_LEGACY,
+                    CryptoJ.generateXPub(Network.ETHEREUM_MAINNET, AddressType.P2PKH_LEGACY, mnemonic));
+
+            try (AddressBook book = AddressBook.open(directory)) {
+                book.append(7, segwit, 0, 1000);
+                book.append(8, ethereum, 0, 300);
+                book.append(7, segwit, 1000, 200);
+                assertEquals(3, book.getSegmentCount());
+                assertEquals(1500, book.size());
+            }
+
+            // reopened book serves lookups straight from the mapped files
+            try (AddressBook book = AddressBook.open(directory)) {
+                assertEquals(1500, book.size());
+                AddressBook.Entry entry = book.find(Network.BITCOIN_MAINNET, "bc1qqkhc9mjkw0rr6n5xechhnvj2lldnd8g7nc3smd");
+                assertNotNull(entry);
+                assertEquals(7, entry.getXPubId());
+                assertEquals(3, entry.getDerivationIndex());
+                assertEquals(Network.BITCOIN_MAINNET, entry.getNetwork());
+                assertEquals(AddressType.P2WPKH_NATIVE_SEGWIT, entry.getAddrType());
+
+                for (Path file : Files.newDirectoryStream(directory, "segment-*")) {
+                    Files.copy(file, directory.resolve("old-" + file.getFileName()));
+                }
+                book.compact();
+                assertEquals(1, book.getSegmentCount());
+                assertEquals(1500, book.size());
+
+                String[] addresses = segwit.generateAddresses(1190, 10);
+                for (int i = 0; i < addresses.length; i++) {
+                    assertEquals(1190 + i, book.find(Network.BITCOIN_MAINNET, addresses[i]).getDerivationIndex());
+                }
+                entry = book.find(Network.ETHEREUM_MAINNET, ethereum.address(299));
+                assertEquals(8, entry.getXPubId());
+                assertEquals(AddressType.P2PKH_LEGACY, entry.getAddrType());
+                assertNull(book.find(CryptoJ.decodeAddressHash(Network.BITCOIN_MAINNET, segwit.address(1200))));
+            }
+
+            // crash of the compaction after its manifest - the replaced segments are deleted when the book is reopened
+            List<String> manifest = new ArrayList<>();
+            for (Path file : Files.newDirectoryStream(directory, "segment-*")) {
+                manifest.add("+" + file.getFileName());
+            }
+            for (Path file : Files.newDirectoryStream(directory, "old-*")) {
+                Path restored = directory.resolve(file.getFileName().toString().substring(4));
+                Files.move(file, restored);
+                manifest.add("-" + restored.getFileName());
+            }
+            Files.write(directory.resolve("compaction.manifest"), manifest);
+            Files.write(directory.resolve("run-000000.tmp"), new byte[100]);
+            try (AddressBook book = AddressBook.open(directory)) {
+                assertEquals(1, book.getSegmentCount());
+                assertEquals(1500, book.size());
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                files.forEach(file -> assertTrue(file.getFileName().toString().startsWith("segment-"), file.toString()));
+            }
+
+            // large append is sorted externally in runs
+            try (AddressBook book = AddressBook.open(directory.resolve("large"))) {
+                book.append(9, segwit, 0, 70_000);
+                assertEquals(1, book.getSegmentCount());
+                assertEquals(70_000, book.size());
+                String[] addresses = segwit.generateAddresses(0, 70_000);
+                for (int i = 0; i < addresses.length; i += 997) {
+                    assertEquals(i, book.find(Network.BITCOIN_MAINNET, addresses[i]).getDerivationIndex());
+                }
+            }
+        } catch (CryptoJException e) {
+            assertTrue(false, "Unexpected exception");
+        }
+    }
+
+    @Test
+    @DisplayName("Test address filter")
+    void testAddressFilter() throws IOException {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+
+        try {
+            XPubHandle legacy = CryptoJ.parseXPub(Network.BITCOIN_MAINNET, AddressType.P2PKH_LEGACY,
+                    CryptoJ.generateXPub(Network.BITCOIN_MAINNET, AddressType.P2PKH_LEGACY, mnemonic));
+            XPubHandle segwit = CryptoJ.parseXPub(Network.BITCOIN_MAINNET, AddressType.P2WPKH_NATIVE_SEGWIT,
+                    CryptoJ.generateXPub(Network.BITCOIN_MAINNET, AddressType.P2WPKH_NATIVE_SEGWIT, mnemonic));
+
+            AddressFilter filter = new AddressFilter(2000, 0.001);
+            filter.addRange(segwit, 0, 1000);
+            AddressFilter other = new AddressFilter(2000, 0.001);
+            other.addRange(legacy, 0, 1000);
+            filter.merge(other);
+            assertEquals(2000, filter.getEntryCount());
+            assertEquals(0.001, filter.getFalsePositiveRate());
+            assertTrue(filter.getCurrentFalsePositiveRate() < 0.002);
+            assertThrows(IllegalArgumentException.class, () -> filter.merge(new AddressFilter(10, 0.001)));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            filter.writeTo(out);
+            assertEquals(filter.getSerializedLength(), out.size());
+            AddressFilter restored = AddressFilter.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+            // header not matching the geometry of the parameters - rate, number of hash functions, number of words
+            for (int position : new int[]{16, 24, 28}) {
+                byte[] corrupted = out.toByteArray();
+                corrupted[position] ^= 0x7f;
+                assertThrows(IOException.class, () -> AddressFilter.readFrom(new ByteArrayInputStream(corrupted)));
+            }
+
+            // no false negatives
+            assertTrue(restored.mightContain(Network.BITCOIN_MAINNET, "bc1qqkhc9mjkw0rr6n5xechhnvj2lldnd8g7nc3smd"));
+            for (String address : legacy.generateAddresses(0, 1000)) {
+                assertTrue(restored.mightContain(Network.BITCOIN_MAINNET, address));
+            }
+
+            // false positives close to the configured rate
+            int falsePositives = 0;
+            for (String address : segwit.generateAddresses(1000, 5000)) {
+                if (restored.mightContain(Network.BITCOIN_MAINNET, address)) {
+                    falsePositives++;
+                }
+            }
+            assertTrue(falsePositives < 25, "Too many false positives: " + falsePositives);
+        } catch (CryptoJException e) {
+            assertTrue(false, "Unexpected exception");
+        }
+    }
+
+    @Test
+    @DisplayName("Test gap limit scanner")
+    void testGapLimitScanner() {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+        Network network = Network.BITCOIN_MAINNET;
+        AddressType addrType = AddressType.P2WPKH_NATIVE_SEGWIT;
+
+        try {
+            DeterministicKey masterKey = PrivateKeyContext.createMasterKey(mnemonic, null);
+            String xPub0 = new PrivateKeyContext(network, addrType, masterKey, 0).xPub();
+            String xPub1 = new PrivateKeyContext(network, addrType, masterKey, 1).xPub();
+            assertEquals(CryptoJ.generateXPub(network, addrType, mnemonic), xPub0);
+            assertNotEquals(xPub0, xPub1);
+
+            // index 25 of account 0 is behind the gap of 20 unused addresses, so it is not discovered
+            Set<String> history = new HashSet<>(Arrays.asList(
+                    CryptoJ.generateAddress(network, addrType, xPub0, 0),
+                    "bc1qqkhc9mjkw0rr6n5xechhnvj2lldnd8g7nc3smd",
+                    CryptoJ.generateAddress(network, addrType, xPub0, 25),
+                    CryptoJ.generateAddress(network, addrType, xPub1, 5)
+            ));
+            UsageOracle oracle = (oracleNetwork, oracleAddrType, batch) -> {
+                boolean[] used = new boolean[batch.length];
+                for (int i = 0; i < batch.length; i++) {
+                    used[i] = history.contains(batch[i].getAddress());
+                }
+                return used;
+            };
+
+            List<GapLimitScanner.AccountUsage> accounts = new GapLimitScanner(oracle, 20, 7, 10, ForkJoinPool.commonPool())
+                    .scan(mnemonic, null, EnumSet.of(network), EnumSet.of(addrType, AddressType.P2PKH_LEGACY));
+            assertEquals(2, accounts.size());
+            assertEquals(0, accounts.get(0).getAccount());
+            assertArrayEquals(new int[]{0, 3}, accounts.get(0).getUsedIndexes());
+            assertEquals(4, accounts.get(0).getNextIndex());
+            assertEquals(1, accounts.get(1).getAccount());
+            assertEquals(xPub1, accounts.get(1).getXPub());
+            assertArrayEquals(new int[]{5}, accounts.get(1).getUsedIndexes());
+
+            UsageOracle failing = (oracleNetwork, oracleAddrType, batch) -> {
+                throw new CryptoJException("History is not available");
+            };
+            assertThrows(CryptoJException.class, () -> new GapLimitScanner(failing).scan(mnemonic, null, EnumSet.of(network), EnumSet.of(addrType)));
+        } catch (CryptoJException e) {
+            assertTrue(false, "Unexpected exception");
+        }
+    }
+
+    @Test
+    @DisplayName("Test index allocator")
+    void testIndexAllocator(@TempDir Path directory) throws Exception {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+        XPubHandle handle = CryptoJ.parseXPub(Network.BITCOIN_MAINNET, AddressType.P2WPKH_NATIVE_SEGWIT,
+                CryptoJ.generateXPub(Network.BITCOIN_MAINNET, AddressType.P2WPKH_NATIVE_SEGWIT, mnemonic));
+        long fingerprint = IndexAllocator.fingerprint(handle);
+        Path logFile = directory.resolve("allocations.log");
+
+        Set<Integer> allocated = ConcurrentHashMap.newKeySet();
+        try (IndexAllocator allocator = IndexAllocator.open(logFile, 10)) {
+            assertEquals(0, allocator.allocate(handle));
+            assertEquals(0, allocator.allocate(fingerprint + 1)); // other xPub has its own counter
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 250; i++) {
+                        assertTrue(allocated.add(allocator.allocate(fingerprint)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+            assertEquals(1000, allocated.size());
+            assertEquals(1001, allocator.peek(fingerprint));
+        }
+
+        // after restart the allocation continues behind the persisted reservation, nothing is reused
+        try (IndexAllocator allocator = IndexAllocator.open(logFile, 10)) {
+            int index = allocator.allocate(handle);
+            assertTrue(index >= 1001);
+            assertTrue(index <= 1010);
+            assertEquals(10, allocator.allocate(fingerprint + 1));
+        }
+    }
+
+    @Test
+    @DisplayName("Test address validation without exceptions")
+    void testAddressValidation() {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+
+        try {
+            List<String> corpus = new ArrayList<>(Arrays.asList(
+                    "", "0x", "1", "bc1", "bc1qqqqqqqqq", "0x1234", "0xZZ34567890123456789012345678901234567890",
+                    "1111111111111111111114oLvT2", "bc1zw508d6qejxtdg4y5r3zarvaryvaxxpcs", // witness version 2 in bech32m
+                    "BC1QW508D6QEJXTDG4Y5R3ZARVARY0C5XW7KV8F3T4", "bc1qw508d6qejxtdg4y5r3zarvary0c5xw7kv8f3t4",
+                    "tb1pqqqqp399et2xygdj5xreqhjjvcmzhxw4aywxecjdzew6hylgvsesf3hn0c"
+            ));
+            for (Network network : Network.values()) {
+                NetworkParameters params = CryptoJ.getNetworkParams(network);
+                corpus.add(LegacyAddress.fromScriptHash(params, new byte[20]).toBase58());
+                corpus.add(SegwitAddress.fromProgram(params, 1, new byte[32]).toBech32());
+                corpus.add(SegwitAddress.fromHash(params, new byte[32]).toBech32());
+                for (AddressType addrType : EnumSet.of(AddressType.P2PKH_LEGACY, AddressType.P2WPKH_NATIVE_SEGWIT)) {
+                    corpus.addAll(Arrays.asList(CryptoJ.generateAddresses(network, addrType, CryptoJ.generateXPub(network, addrType, mnemonic), 0, 3)));
+                }
+            }
+            // mutations - replaced, removed and case swapped characters
+            for (String address : new ArrayList<>(corpus)) {
+                corpus.add(address.toUpperCase());
+                for (int i = 0; i < address.length(); i += 3) {
+                    corpus.add(address.substring(0, i) + address.substring(i + 1));
+                    corpus.add(address.substring(0, i) + (address.charAt(i) == 'q' ? 'p' : 'q') + address.substring(i + 1));
+                }
+            }
+
+            for (String address : corpus) {
+                for (Network network : Network.values()) {
+                    boolean expected;
+                    if (network.getCoinType() == CoinType.ETH && address.startsWith("0x")) {
+                        expected = address.length() == 42 && address.substring(2).matches("[0-9a-fA-F]*");
+                    } else {
+                        try {
+                            Address.fromString(CryptoJ.getNetworkParams(network), address);
+                            expected = true;
+                        } catch (AddressFormatException | ArrayIndexOutOfBoundsException ex) {
+                            expected = false;
+                        }
+                    }
+                    assertEquals(expected, CryptoJ.isAddressValid(network, address), network + " " + address);
+                }
+            }
+
+            assertEquals(AddressStatus.VALID, CryptoJ.validateAddress(Network.BITCOIN_MAINNET, "bc1qqkhc9mjkw0rr6n5xechhnvj2lldnd8g7nc3smd"));
+            assertEquals(AddressStatus.INVALID_CHECKSUM, CryptoJ.validateAddress(Network.BITCOIN_MAINNET, "bc1qqkhc9mjkw0rr6n5xechhnvj2lldnd8g7nc3sme"));
+            assertEquals(AddressStatus.WRONG_NETWORK, CryptoJ.validateAddress(Network.LITECOIN_MAINNET, "bc1qqkhc9mjkw0rr6n5xechhnvj2lldnd8g7nc3smd"));
+            assertEquals(AddressStatus.INVALID_LENGTH, CryptoJ.validateAddress(Network.ETHEREUM_MAINNET, "0x1234"));
+
+            // very long input is rejected by its length, before any arithmetic
+            String longInput = "z".repeat(100_000);
+            assertEquals(AddressStatus.INVALID_LENGTH, CryptoJ.validateAddress(Network.BITCOIN_MAINNET, longInput));
+            assertTrue(CryptoJ.isAddressValid(longInput).isEmpty());
+            assertFalse(CryptoJ.isXPubValid(Network.BITCOIN_MAINNET, longInput));
+            assertFalse(CryptoJ.privateKeyMatchesAddress(Network.BITCOIN_MAINNET, longInput, longInput));
+            assertTrue(Base58Codec.decode("z".repeat(30_000), new byte[30_000]) > 0); // limbs are sized by rounded-up bound
+        } catch (CryptoJException e) {
+            assertTrue(false, "Unexpected exception");
+        }
+    }
+
+    @Test
+    @DisplayName("Test address classification across networks")
+    void testAddressClassification() {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+
+        try {
+            List<String> corpus = new ArrayList<>(Arrays.asList(
+                    "", "0x", "bc1", "0x1234", "0xZZ34567890123456789012345678901234567890",
+                    "0x52908400098527886E0F7030069857D2E4169EE7", "bc1zw508d6qejxtdg4y5r3zarvaryvaxxpcs",
+                    "tb1pqqqqp399et2xygdj5xreqhjjvcmzhxw4aywxecjdzew6hylgvsesf3hn0c"
+            ));
+            for (Network network : Network.values()) {
+                NetworkParameters params = CryptoJ.getNetworkParams(network);
+                corpus.add(LegacyAddress.fromScriptHash(params, new byte[20]).toBase58());
+                corpus.add(SegwitAddress.fromProgram(params, 1, new byte[32]).toBech32());
+                corpus.add(SegwitAddress.fromHash(params, new byte[32]).toBech32());
+                for (AddressType addrType : EnumSet.of(AddressType.P2PKH_LEGACY, AddressType.P2WPKH_NATIVE_SEGWIT)) {
+                    corpus.addAll(Arrays.asList(CryptoJ.generateAddresses(network, addrType, CryptoJ.generateXPub(network, addrType, mnemonic), 0, 2)));
+                }
+            }
+            for (String address : new ArrayList<>(corpus)) {
+                corpus.add(address.toUpperCase());
+                for (int i = 0; i < address.length(); i += 5) {
+                    corpus.add(address.substring(0, i) + address.substring(i + 1));
+                    corpus.add(address.substring(0, i) + (address.charAt(i) == 'q' ? 'p' : 'q') + address.substring(i + 1));
+                }
+            }
+
+            for (String address : corpus) {
+                Set<Network> expected = EnumSet.noneOf(Network.class);
+                for (Network network : Network.values()) {
+                    if (CryptoJ.isAddressValid(network, address)) {
+                        expected.add(network);
+                    }
+                }
+                AddressClassification classification = CryptoJ.classifyAddress(address);
+                assertEquals(expected, classification.getNetworks(), address);
+                assertEquals(expected, new HashSet<>(CryptoJ.isAddressValid(address)), address);
+                for (Network network : expected) {
+                    assertArrayEquals(CryptoJ.decodeAddressHash(network, address), classification.getHash(), address);
+                }
+            }
+
+            AddressClassification segwit = CryptoJ.classifyAddress("bc1qqkhc9mjkw0rr6n5xechhnvj2lldnd8g7nc3smd");
+            assertEquals(EnumSet.of(Network.BITCOIN_MAINNET, Network.ETHEREUM_MAINNET, Network.ETHEREUM_TESTNET_ROPSTEN), segwit.getNetworks());
+            assertEquals(AddressType.P2WPKH_NATIVE_SEGWIT, segwit.getAddrType());
+            assertEquals(AddressType.P2TR_TAPROOT, CryptoJ.classifyAddress(SegwitAddress.fromProgram(CryptoJ.getNetworkParams(Network.LITECOIN_MAINNET), 1, new byte[32]).toBech32()).getAddrType());
+            assertEquals(AddressType.P2SH_PAY_TO_SCRIPT_HASH, CryptoJ.classifyAddress(LegacyAddress.fromScriptHash(CryptoJ.getNetworkParams(Network.BITCOIN_TESTNET), new byte[20]).toBase58()).getAddrType());
+            assertEquals(EnumSet.of(Network.ETHEREUM_MAINNET, Network.ETHEREUM_TESTNET_ROPSTEN), CryptoJ.classifyAddress("0x52908400098527886E0F7030069857D2E4169EE7").getNetworks());
+            assertFalse(CryptoJ.classifyAddress("bc1qqkhc9mjkw0rr6n5xechhnvj2lldnd8g7nc3sme").isValid());
+        } catch (CryptoJException e) {
+            assertTrue(false, "Unexpected exception");
+        }
+    }
+
+    @Test
+    @DisplayName("Test Base58, Bech32 and hex codecs")
+    void testCodecs() {
+        Random random = new Random(19);
+        char[] chars = new char[256];
+        int[] limbs = new int[Base58Codec.limbsLength(100)];
+        for (int length = 0; length < 100; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            if (length > 2) {
+                data[0] = 0; // leading zeros are encoded as '1'
+                data[1] = (byte) (length % 2);
+            }
+
+            int n = Base58Codec.encode(data, 0, length, chars, 3, limbs);
+            assertEquals(Base58.encode(data), new String(chars, 3, n));
+            byte[] decoded = new byte[length];
+            assertEquals(length, Base58Codec.decode(new String(chars, 3, n), decoded));
+            assertArrayEquals(data, decoded);
+
+            n = HexCodec.encode(data, 0, length, chars, 1);
+            assertEquals(Utils.HEX.encode(data), new String(chars, 1, n));
+            assertEquals(length, HexCodec.decode(new String(chars, 1, n).toUpperCase(), 0, n, decoded, 0));
+            assertArrayEquals(data, decoded);
+
+            if (length <= 40) {
+                int version = length % 17;
+                n = Bech32Codec.encodeSegwit("tb", version, data, 0, length, new byte[65], chars, 0);
+                if (length < 2 || (version == 0 && length != 20 && length != 32)) {
+                    continue;
+                }
+                assertEquals(SegwitAddress.fromProgram(CryptoJ.getNetworkParams(Network.BITCOIN_TESTNET), version, data).toBech32(), new String(chars, 0, n));
+            }
+        }
+        byte[] checked = new byte[21 + 32];
+        random.nextBytes(checked);
+        int n = Base58Codec.encodeChecked(checked, 21, Sha256Hash.newDigest(), chars, 0, limbs);
+        assertEquals(Base58.encodeChecked(checked[0] & 0xff, Arrays.copyOfRange(checked, 1, 21)), new String(chars, 0, n));
+        assertEquals(HexCodec.INVALID_CHARACTER, HexCodec.decode("0g", 0, 2, new byte[1], 0));
+        assertEquals(HexCodec.INVALID_LENGTH, HexCodec.decode("abc", 0, 3, new byte[2], 0));
+        assertEquals(Base58Codec.BUFFER_TOO_SMALL, Base58Codec.encode(new byte[]{1, 2, 3}, 0, 3, new char[2], 0, limbs));
+    }
+
+    @Test
+    @DisplayName("Test xPub validation")
+    void testXPubValidation() {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+
+        try {
+            List<String> corpus = new ArrayList<>(Arrays.asList("", "xpub", "1111"));
+            for (Network network : Network.values()) {
+                corpus.add(CryptoJ.generateXPub(network, AddressType.P2PKH_LEGACY, mnemonic));
+                corpus.add(CryptoJ.generateXPub(network, AddressType.P2WPKH_NATIVE_SEGWIT, mnemonic));
+                DeterministicKey masterKey = PrivateKeyContext.createMasterKey(mnemonic, "");
+                corpus.add(masterKey.serializePrivB58(CryptoJ.getNetworkParams(network)));
+            }
+            for (String xPub : new ArrayList<>(corpus)) {
+                for (int i = 0; i < xPub.length(); i += 7) {
+                    corpus.add(xPub.substring(0, i) + xPub.substring(i + 1));
+                    corpus.add(xPub.substring(0, i) + (xPub.charAt(i) == 'z' ? 'y' : 'z') + xPub.substring(i + 1));
+                }
+            }
+            for (String xPub : corpus) {
+                for (Network network : Network.values()) {
+                    boolean expected;
+                    try {
+                        expected = DeterministicKey.deserializeB58(xPub, CryptoJ.getNetworkParams(network)).isPubKeyOnly();
+                    } catch (IllegalArgumentException | BufferUnderflowException ex) {
+                        expected = false;
+                    }
+                    assertEquals(expected, CryptoJ.isXPubValid(network, xPub), network + " " + xPub);
+                }
+            }
+        } catch (CryptoJException e) {
+            assertTrue(false, "Unexpected exception");
+        }
+    }
+
+    @Test
+    @DisplayName("Test hash160 engine")
+    void testHash160() {
+        Random random = new Random(20);
+        Hash160 hash160 = new Hash160();
+        byte[] out = new byte[Hash160.HASH_LENGTH + 3];
+        for (int length = 0; length < 200; length += 11) {
+            byte[] data = new byte[length + 2];
+            random.nextBytes(data);
+            hash160.hash160(data, 1, length, out, 3);
+            assertArrayEquals(Utils.sha256hash160(Arrays.copyOfRange(data, 1, 1 + length)), Arrays.copyOfRange(out, 3, out.length));
+        }
+        byte[] pubKey = ECKey.fromPrivate(BigInteger.TEN).getPubKey();
+        assertArrayEquals(Utils.sha256hash160(pubKey), hash160.hash160(pubKey));
+
+        // batches - equal lengths hashed lane-parallel if the lane engine is available, mixed lengths one by one
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            assertTrue(Hash160.lanes() >= 4);
+        }
+        for (int length : new int[]{0, 33, 55, 56, 64, 65, 119, 200, -1}) {
+            byte[][] inputs = new byte[37][];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = new byte[length < 0 ? random.nextInt(150) : length];
+                random.nextBytes(inputs[i]);
+            }
+            byte[] hashes = new byte[2 + inputs.length * Hash160.HASH_LENGTH];
+            hash160.hash160(inputs, inputs.length - 1, hashes, 2);
+            for (int i = 0; i < inputs.length - 1; i++) {
+                int from = 2 + i * Hash160.HASH_LENGTH;
+                assertArrayEquals(Utils.sha256hash160(inputs[i]), Arrays.copyOfRange(hashes, from, from + Hash160.HASH_LENGTH));
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> hash160.hash160(new byte[][]{pubKey, pubKey}, new byte[39]));
+    }
+
+    @Test
+    @DisplayName("Test mnemonic validation")
+    void testMnemonicValidation() {
+        Random random = new Random(21);
+        List<String> corpus = new ArrayList<>(Arrays.asList(
+                "", " ", "abandon", "floor earn cube small wolf elevator leaf duty deposit renew balcony chat ",
+                " floor earn cube small wolf elevator leaf duty deposit renew balcony chat",
+                "floor earn cube small wolf elevator leaf duty deposit renew  balcony chat",
+                "Floor earn cube small wolf elevator leaf duty deposit renew balcony chat"
+        ));
+        try {
+            for (int length = 3; length <= 30; length += 3) {
+                byte[] entropy = new byte[length / 3 * 4];
+                random.nextBytes(entropy);
+                List<String> words = MnemonicCode.INSTANCE.toMnemonic(entropy);
+                corpus.add(String.join(" ", words));
+                List<String> replaced = new ArrayList<>(words);
+                replaced.set(random.nextInt(length), MnemonicCode.INSTANCE.getWordList().get(random.nextInt(2048)));
+                corpus.add(String.join(" ", replaced));
+                corpus.add(String.join(" ", words.subList(1, length)));
+                corpus.add(String.join(" ", words) + " " + words.get(0));
+            }
+        } catch (MnemonicException e) {
+            assertTrue(false, "Unexpected exception");
+        }
+
+        boolean[] valid = CryptoJ.areMnemonicsValid(corpus);
+        for (int i = 0; i < corpus.size(); i++) {
+            String mnemonic = corpus.get(i);
+            boolean expected;
+            try {
+                MnemonicCode.INSTANCE.check(Arrays.asList(mnemonic.split(" ", -1)));
+                expected = true;
+            } catch (MnemonicException e) {
+                expected = false;
+            }
+            assertEquals(expected, CryptoJ.isMnemonicValid(mnemonic), mnemonic);
+            assertEquals(expected, valid[i], mnemonic);
+        }
+        assertEquals(MnemonicCode.INSTANCE.getWordList().indexOf("cube"), MnemonicValidator.indexOf("a cube", 2, 4));
+        assertEquals(MnemonicCode.INSTANCE.getWordList().indexOf("zoo"), MnemonicValidator.indexOf("zoo", 0, 3));
+        assertEquals(-1, MnemonicValidator.indexOf("zo", 0, 2));
+    }
+
+    @Test
+    @DisplayName("Test entropy source")
+    void testEntropySource() {
+        DrbgEntropySource drbg = new DrbgEntropySource(64, DrbgEntropySource.DEFAULT_RESEED_INTERVAL_MILLIS);
+        byte[] bytes = new byte[1000];
+        drbg.nextBytes(bytes, 10, 980);
+        assertEquals(0, bytes[0] | bytes[9] | bytes[990] | bytes[999]);
+        assertNotEquals(0L, new BigInteger(Arrays.copyOfRange(bytes, 10, 42)).signum());
+        assertTrue(drbg.getReseedCount() > 0);
+        for (int i = 0; i < 100; i++) {
+            int value = drbg.nextInt(7);
+            assertTrue(value >= 0 && value < 7);
+        }
+
+        EntropySource previous = CryptoJ.getEntropySource();
+        EntropySource zeros = (target, offset, length) -> Arrays.fill(target, offset, offset + length, (byte) 0);
+        try {
+            CryptoJ.setEntropySource(zeros);
+            assertEquals("abandon abandon abandon abandon abandon abandon abandon abandon abandon abandon abandon about", CryptoJ.generateMnemonic(12));
+            assertEquals("AAAA", StringTools.generateRandomString(4, StringTools.ALPHABETICAL_ARRAY));
+        } catch (CryptoJException e) {
+            assertTrue(false, "Unexpected exception");
+        } finally {
+            CryptoJ.setEntropySource(previous);
+        }
+    }
+
+    @Test
+    @DisplayName("Test provisioning pipeline")
+    void testProvisioningPipeline(@TempDir Path directory) throws Exception {
+        Path outputFile = directory.resolve("wallets.csv");
+        Path checkpointFile = directory.resolve("wallets.checkpoint");
+        Map<ProvisioningPipeline.Stage, Integer> threads = new EnumMap<>(ProvisioningPipeline.Stage.class);
+        threads.put(ProvisioningPipeline.Stage.SEED, 3);
+        threads.put(ProvisioningPipeline.Stage.ADDRESS, 2);
+        ProvisioningPipeline pipeline = new ProvisioningPipeline(12, "",
+                EnumSet.of(Network.BITCOIN_MAINNET, Network.ETHEREUM_MAINNET),
+                EnumSet.of(AddressType.P2PKH_LEGACY, AddressType.P2WPKH_NATIVE_SEGWIT),
+                3, threads, 2, 2);
+
+        try (FileChannel output = FileChannel.open(outputFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            assertEquals(3, pipeline.run(3, output, checkpointFile));
+        }
+        // bytes written after the last checkpoint, e.g. by a crashed run, are discarded on resume
+        Files.write(outputFile, "3,partial".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+        try (FileChannel output = FileChannel.open(outputFile, StandardOpenOption.WRITE)) {
+            assertEquals(4, pipeline.run(7, output, checkpointFile));
+            assertEquals(0, pipeline.run(7, output, checkpointFile));
+        }
+
+        List<String> lines = Files.readAllLines(outputFile, StandardCharsets.US_ASCII);
+        assertEquals("wallet,mnemonic,network,address_type,xpub,address_0,address_1,address_2", lines.get(0));
+        assertEquals(1 + 7 * 4, lines.size());
+        for (int i = 1; i < lines.size(); i++) {
+            String[] row = lines.get(i).split(",");
+            assertEquals(8, row.length);
+            assertEquals((i - 1) / 4, Integer.parseInt(row[0]));
+            assertTrue(CryptoJ.isMnemonicValid(row[1]));
+            Network network = Arrays.stream(Network.values()).filter(n -> n.getCode().equals(row[2])).findFirst().orElseThrow();
+            AddressType addrType = Arrays.stream(AddressType.values()).filter(t -> t.getCode().equals(row[3])).findFirst().orElseThrow();
+            assertEquals(CryptoJ.generateXPub(network, addrType, row[1]), row[4]);
+            assertEquals(CryptoJ.generateAddress(network, addrType, row[4], 2), row[7]);
+        }
+
+        assertThrows(CryptoJException.class, () -> new ProvisioningPipeline(12, "",
+                EnumSet.of(Network.BITCOIN_MAINNET), EnumSet.of(AddressType.P2SH_PAY_TO_SCRIPT_HASH), 3));
+    }
+
+    @Test
+    @DisplayName("Test key pair audit")
+    void testKeyPairAudit() throws CryptoJException {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+        Set<AddressType> addrTypes = EnumSet.of(AddressType.P2PKH_LEGACY, AddressType.P2WPKH_NATIVE_SEGWIT, AddressType.P2TR_TAPROOT);
+
+        // private side matches the public key of the encoded private key
+        for (Network network : new Network[]{Network.BITCOIN_MAINNET, Network.LITECOIN_TESTNET, Network.ETHEREUM_MAINNET}) {
+            PrivateKeyContext context = new PrivateKeyContext(network, AddressType.P2PKH_LEGACY, mnemonic, "");
+            byte[] hashes = new byte[3 * Hash160.HASH_LENGTH];
+            context.generatePublicKeyHashes(5, 3, hashes, 0);
+            for (int i = 0; i < 3; i++) {
+                ECKey key = CryptoJ.parsePrivateKey(network, context.privateKey(5 + i));
+                byte[] expected = network.getCoinType() == CoinType.ETH
+                        ? CryptoJ.decodeAddressHash(network, CryptoJ.generateAddress(network, AddressType.P2PKH_LEGACY, context.xPub(), 5 + i))
+                        : key.getPubKeyHash();
+                assertArrayEquals(expected, Arrays.copyOfRange(hashes, i * 20, i * 20 + 20));
+            }
+        }
+
+        assertTrue(new KeyPairAuditor().audit(mnemonic, "", EnumSet.allOf(Network.class), addrTypes, 0, 200).isEmpty());
+        assertTrue(new KeyPairAuditor(new ForkJoinPool(3), 7).audit(mnemonic, "pass", EnumSet.of(Network.ETHEREUM_MAINNET),
+                addrTypes, 1000, 50).isEmpty());
+
+        assertThrows(CryptoJException.class, () -> new KeyPairAuditor().audit(mnemonic, "", EnumSet.of(Network.BITCOIN_MAINNET),
+                EnumSet.of(AddressType.P2SH_PAY_TO_SCRIPT_HASH), 0, 10));
+        assertThrows(CryptoJException.class, () -> new KeyPairAuditor().audit(mnemonic, "", EnumSet.of(Network.BITCOIN_MAINNET),
+                addrTypes, -1, 10));
+    }
+
+    @Test
+    @DisplayName("Test private key matches address")
+    void testPrivateKeyMatchesAddress() throws CryptoJException {
+        String mnemonic = "floor earn cube small wolf elevator leaf duty deposit renew balcony chat";
+        for (Network network : Network.values()) {
+            for (AddressType addrType : AddressType.values()) {
+                if (addrType == AddressType.P2SH_PAY_TO_SCRIPT_HASH) {
+                    continue;
+                }
+                String xPub = CryptoJ.generateXPub(network, addrType, mnemonic);
+                String[] addresses = CryptoJ.generateAddresses(network, addrType, xPub, 0, 2);
+                String[] privateKeys = CryptoJ.generatePrivateKeys(network, addrType, mnemonic, "", 0, 2);
+                assertTrue(CryptoJ.privateKeyMatchesAddress(network, privateKeys[0], addresses[0]));
+                assertTrue(CryptoJ.privateKeyMatchesAddress(network, privateKeys[1], addresses[1]));
+                assertFalse(CryptoJ.privateKeyMatchesAddress(network, privateKeys[0], addresses[1]));
+                assertFalse(CryptoJ.privateKeyMatchesAddress(network, privateKeys[0], addresses[0] + "x"));
+                assertFalse(CryptoJ.privateKeyMatchesAddress(network, privateKeys[0].substring(1), addresses[0]));
+                String signature = CryptoJ.signMessage(network, "message", privateKeys[0]);
+                assertEquals(CryptoJ.verifyMessage(network, "message", signature, addresses[1]),
+                        CryptoJ.privateKeyMatchesAddress(network, privateKeys[0], addresses[1]));
+            }
+        }
+
+        // uncompressed key owns its legacy address, but cannot own a segwit one
+        ECKey key = ECKey.fromPrivate(new BigInteger("1234567890abcdef1234567890abcdef", 16), false);
+        NetworkParameters params = CryptoJ.getNetworkParams(Network.BITCOIN_MAINNET);
+        String wif = key.getPrivateKeyAsWiF(params);
+        assertTrue(CryptoJ.privateKeyMatchesAddress(Network.BITCOIN_MAINNET, wif, LegacyAddress.fromKey(params, key).toString()));
+        assertFalse(CryptoJ.privateKeyMatchesAddress(Network.BITCOIN_MAINNET, wif, SegwitAddress.fromHash(params, key.getPubKeyHash()).toString()));
+        assertFalse(CryptoJ.privateKeyMatchesAddress(Network.BITCOIN_TESTNET, wif, LegacyAddress.fromKey(params, key).toString()));
+
+        String ethKey = CryptoJ.generatePrivateKey(Network.ETHEREUM_MAINNET, AddressType.P2PKH_LEGACY, mnemonic, 3);
+        String ethAddress = CryptoJ.generateAddress(Network.ETHEREUM_MAINNET, AddressType.P2PKH_LEGACY,
+                CryptoJ.generateXPub(Network.ETHEREUM_MAINNET, AddressType.P2PKH_LEGACY, mnemonic), 3);
+        assertTrue(CryptoJ.privateKeyMatchesAddress(Network.ETHEREUM_MAINNET, ethKey.toUpperCase().replace("0X", "0x"), ethAddress.toLowerCase()));
+        assertFalse(CryptoJ.privateKeyMatchesAddress(Network.ETHEREUM_MAINNET, ethKey.substring(2), ethAddress));
+        assertFalse(CryptoJ.privateKeyMatchesAddress(Network.ETHEREUM_MAINNET, "0x" + "0".repeat(64), ethAddress));
+        // the same keys as parsePrivateKey accepts - leading zero bytes may be added or omitted
+        String twoKey = "0x02";
+        String twoAddress = Keys.toChecksumAddress(Keys.getAddress(Sign.publicKeyFromPrivate(BigInteger.TWO)));
+        assertTrue(CryptoJ.isPrivateKeyValid(Network.ETHEREUM_MAINNET, twoKey));
+        assertTrue(CryptoJ.privateKeyMatchesAddress(Network.ETHEREUM_MAINNET, twoKey, twoAddress));
+        assertFalse(CryptoJ.isPrivateKeyValid(Network.ETHEREUM_MAINNET, "0x01"));
+        assertFalse(CryptoJ.privateKeyMatchesAddress(Network.ETHEREUM_MAINNET, "0x01",
+                Keys.toChecksumAddress(Keys.getAddress(Sign.publicKeyFromPrivate(BigInteger.ONE)))));
+        assertTrue(CryptoJ.privateKeyMatchesAddress(Network.ETHEREUM_MAINNET, "0x0000" + ethKey.substring(2), ethAddress));
+        assertFalse(CryptoJ.privateKeyMatchesAddress(Network.ETHEREUM_MAINNET, "0x1" + ethKey.substring(2), ethAddress));
+        assertFalse(CryptoJ.privateKeyMatchesAddress(Network.ETHEREUM_MAINNET, "0x01" + ethKey.substring(2), ethAddress));
+    }
+
     @Test
     @DisplayName("Test transaction")
     void testBTCTransaction() {